@@ -0,0 +1,74 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Events and subscriber interfaces shared by the benchmarks. {@link DeepEvent} sits five classes below {@code Object},
+ * so a post flattens a deep hierarchy; {@link ShallowEvent} extends {@code Object} directly.
+ */
+final class BenchmarkEvents {
+
+    private BenchmarkEvents() {
+    }
+
+    static class ShallowEvent {
+    }
+
+    static class Level1 {
+    }
+
+    static class Level2 extends Level1 {
+    }
+
+    static class Level3 extends Level2 {
+    }
+
+    static class Level4 extends Level3 {
+    }
+
+    static class DeepEvent extends Level4 {
+    }
+
+    public interface Listener {
+        void onShallow(ShallowEvent event);
+
+        void onDeep(Level1 event);
+    }
+
+    public interface StrictListener {
+        void onShallow(ShallowEvent event);
+
+        void onDeep(Level1 event);
+    }
+
+    static final class CountingListener implements Listener {
+        int count;
+
+        @Override
+        public void onShallow(ShallowEvent event) {
+            count++;
+        }
+
+        @Override
+        public void onDeep(Level1 event) {
+            count++;
+        }
+    }
+
+    static final class CountingStrictListener implements StrictListener {
+        int count;
+
+        @Override
+        public void onShallow(ShallowEvent event) {
+            count++;
+        }
+
+        @Override
+        public void onDeep(Level1 event) {
+            count++;
+        }
+    }
+
+    static MMBus newBus(boolean strict) {
+        HandlerFinder finder = strict ? new StrictHandlerFindler() : new DefaultHandlerFinder();
+        return new MMBus(ThreadEnforcer.ANY, "Benchmark", new IndexedHandlerFinder(finder));
+    }
+}
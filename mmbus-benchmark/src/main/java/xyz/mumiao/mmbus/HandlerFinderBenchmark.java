@@ -0,0 +1,55 @@
+package xyz.mumiao.mmbus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefaultHandlerFinder} against {@link StrictHandlerFindler}: cold scans an interface with a new finder, warm
+ * reuses one whose method cache is filled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerFinderBenchmark {
+
+    @Param({"default", "strict"})
+    public String finder;
+
+    private HandlerFinder warmFinder;
+    private BenchmarkEvents.CountingListener listener;
+
+    @Setup
+    public void setUp() {
+        listener = new BenchmarkEvents.CountingListener();
+        warmFinder = newFinder();
+        warmFinder.findAllSubscribers(BenchmarkEvents.Listener.class, listener);
+    }
+
+    private HandlerFinder newFinder() {
+        return "strict".equals(finder) ? new StrictHandlerFindler() : new DefaultHandlerFinder();
+    }
+
+    @Benchmark
+    public Object cold() {
+        return newFinder().findAllSubscribers(BenchmarkEvents.Listener.class, listener);
+    }
+
+    @Benchmark
+    public Object warm() {
+        return warmFinder.findAllSubscribers(BenchmarkEvents.Listener.class, listener);
+    }
+}
@@ -0,0 +1,74 @@
+package xyz.mumiao.mmbus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both {@code post} overloads and a {@link MMBus#publisher(Class)} call, to 1, 10 and 1000 handlers of one key, with
+ * a shallow and a deep event hierarchy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int handlers;
+
+    @Param({"shallow", "deep"})
+    public String hierarchy;
+
+    private MMBus bus;
+    private MMBus strictBus;
+    private Object event;
+    private String strictMethod;
+    private BenchmarkEvents.StrictListener publisher;
+    private boolean deep;
+
+    @Setup
+    public void setUp() {
+        bus = BenchmarkEvents.newBus(false);
+        strictBus = BenchmarkEvents.newBus(true);
+        for (int i = 0; i < handlers; i++) {
+            bus.register(BenchmarkEvents.Listener.class, new BenchmarkEvents.CountingListener());
+            strictBus.register(BenchmarkEvents.StrictListener.class, new BenchmarkEvents.CountingStrictListener());
+        }
+        publisher = strictBus.publisher(BenchmarkEvents.StrictListener.class);
+        deep = "deep".equals(hierarchy);
+        event = deep ? new BenchmarkEvents.DeepEvent() : new BenchmarkEvents.ShallowEvent();
+        strictMethod = deep ? "onDeep" : "onShallow";
+    }
+
+    @Benchmark
+    public void post() {
+        bus.post(BenchmarkEvents.Listener.class, event);
+    }
+
+    @Benchmark
+    public void postStrict() {
+        strictBus.post(BenchmarkEvents.StrictListener.class, strictMethod, event);
+    }
+
+    @Benchmark
+    public void publish() {
+        if (deep) {
+            publisher.onDeep((BenchmarkEvents.Level1) event);
+        } else {
+            publisher.onShallow((BenchmarkEvents.ShallowEvent) event);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package xyz.mumiao.mmbus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A register/unregister round trip of one subscriber, next to 1, 10 or 1000 subscribers already registered on the
+ * same keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisterBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int handlers;
+
+    @Param({"default", "strict"})
+    public String finder;
+
+    private MMBus bus;
+    private Class<Object> keyClass;
+    private Object subscriber;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        boolean strict = "strict".equals(finder);
+        bus = BenchmarkEvents.newBus(strict);
+        keyClass = (Class<Object>) (Class<?>) (strict ? BenchmarkEvents.StrictListener.class : BenchmarkEvents.Listener.class);
+        for (int i = 0; i < handlers; i++) {
+            bus.register(keyClass, newSubscriber(strict));
+        }
+        subscriber = newSubscriber(strict);
+    }
+
+    private static Object newSubscriber(boolean strict) {
+        return strict ? new BenchmarkEvents.CountingStrictListener() : new BenchmarkEvents.CountingListener();
+    }
+
+    @Benchmark
+    public void registerAndUnregister() {
+        bus.register(keyClass, subscriber);
+        bus.unregister(keyClass, subscriber);
+    }
+
+    @Benchmark
+    public void registerAndUnregisterHandle() {
+        bus.register(keyClass, subscriber).unregister();
+    }
+}
@@ -0,0 +1,50 @@
+package xyz.mumiao.mmservicecenter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MMServiceCenter#getService(Class)} of a service that already exists, from one thread and from eight
+ * threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceCenterBenchmark {
+
+    public static class BenchmarkService extends MMService {
+    }
+
+    @Setup
+    public void setUp() {
+        MMServiceCenter.configDebug(false);
+        MMServiceCenter.init(null);
+        MMServiceCenter.getService(BenchmarkService.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BenchmarkService getService() {
+        return MMServiceCenter.getService(BenchmarkService.class);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public BenchmarkService getServiceContended() {
+        return MMServiceCenter.getService(BenchmarkService.class);
+    }
+}
@@ -0,0 +1,29 @@
+package android.os;
+
+/**
+ * JVM stand-in: messages and callbacks are dropped, benchmarks only use {@code POSTING} handlers.
+ */
+public class Handler {
+
+    public interface Callback {
+        boolean handleMessage(Message msg);
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public Handler(Looper looper, Callback callback) {
+    }
+
+    public final boolean post(Runnable r) {
+        return true;
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return true;
+    }
+}
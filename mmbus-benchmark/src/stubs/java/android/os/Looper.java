@@ -0,0 +1,25 @@
+package android.os;
+
+/**
+ * JVM stand-in: there is a main looper, but no benchmark thread runs it.
+ */
+public final class Looper {
+
+    private static final Looper MAIN = new Looper();
+    private static final MessageQueue QUEUE = new MessageQueue();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return MAIN;
+    }
+
+    public static Looper myLooper() {
+        return null;
+    }
+
+    public static MessageQueue myQueue() {
+        return QUEUE;
+    }
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * JVM stand-in: idle handlers are never called.
+ */
+public final class MessageQueue {
+
+    public interface IdleHandler {
+        boolean queueIdle();
+    }
+
+    public void addIdleHandler(IdleHandler handler) {
+    }
+
+    public void removeIdleHandler(IdleHandler handler) {
+    }
+}
@@ -0,0 +1,22 @@
+package android.util;
+
+/**
+ * JVM stand-in that drops every message, so logging does not show up in the measurements.
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+}
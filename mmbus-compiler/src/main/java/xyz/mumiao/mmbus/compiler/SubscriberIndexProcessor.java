@@ -0,0 +1,327 @@
+package xyz.mumiao.mmbus.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates the MMBus subscriber index for every interface annotated with {@code @BusInterface}, together with one
+ * {@code EventInvoker} per interface that calls its methods directly instead of through reflection.
+ *
+ * <p>The fully qualified name of the generated class is given with the {@code mmbusIndex} processor option, e.g.
+ * {@code -AmmbusIndex=com.example.MyBusIndex}. Without it nothing is generated and the bus keeps scanning at runtime.
+ */
+public class SubscriberIndexProcessor extends AbstractProcessor {
+
+    static final String OPTION_INDEX = "mmbusIndex";
+
+    static final String BUS_INTERFACE = "xyz.mumiao.mmbus.BusInterface";
+
+    static final String SUBSCRIBE = "xyz.mumiao.mmbus.Subscribe";
+
+    static final String THREAD_MODE = "xyz.mumiao.mmbus.ThreadMode";
+
+    static final String INVOKER_SUFFIX = "_MMBusInvoker";
+
+    /**
+     * Qualified names of the annotated interfaces of every round, in the order they were found to keep the output
+     * stable. Elements are looked up again by name once processing is over, those of earlier rounds must not be reused.
+     */
+    private final Set<String> interfaces = new LinkedHashSet<String>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(BUS_INTERFACE);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_INDEX);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Messager messager = processingEnv.getMessager();
+        String index = processingEnv.getOptions().get(OPTION_INDEX);
+        // written once every round is done, so interfaces generated by other processors are indexed too
+        if (roundEnv.processingOver()) {
+            if (index != null && !interfaces.isEmpty()) {
+                writeIndex(index);
+            }
+            return true;
+        }
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.INTERFACE) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "@BusInterface is only valid on interfaces.", element);
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                if (!checkInterface(type)) {
+                    continue;
+                }
+                if (index == null) {
+                    if (interfaces.isEmpty()) {
+                        messager.printMessage(Diagnostic.Kind.NOTE, "No option " + OPTION_INDEX
+                                + " passed to annotation processor, MMBus subscriber index is not generated.");
+                    }
+                } else if (!interfaces.contains(type.getQualifiedName().toString())) {
+                    // invokers are plain classes, written in the round of their interface
+                    writeInvoker(type);
+                }
+                interfaces.add(type.getQualifiedName().toString());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The generated index refers to the interface and its parameter types with class literals, so all of them must
+     * be reachable from the index package.
+     */
+    private boolean checkInterface(TypeElement type) {
+        Messager messager = processingEnv.getMessager();
+        if (!type.getTypeParameters().isEmpty()) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "@BusInterface interfaces cannot be generic.", type);
+            return false;
+        }
+        for (Element enclosing = type; enclosing.getKind() != ElementKind.PACKAGE; enclosing = enclosing.getEnclosingElement()) {
+            if (!enclosing.getModifiers().contains(Modifier.PUBLIC)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@BusInterface interfaces must be public to be indexed.", type);
+                return false;
+            }
+            if (enclosing instanceof TypeElement && ((TypeElement) enclosing).getNestingKind() == NestingKind.LOCAL) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@BusInterface interfaces cannot be local.", type);
+                return false;
+            }
+        }
+        boolean valid = true;
+        for (ExecutableElement method : subscriberMethods(type)) {
+            for (VariableElement parameter : method.getParameters()) {
+                if (parameter.asType().getKind() == TypeKind.TYPEVAR) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "@BusInterface methods cannot take type variables.", method);
+                    valid = false;
+                }
+            }
+        }
+        return valid;
+    }
+
+    private void writeIndex(String index) {
+        int period = index.lastIndexOf('.');
+        String packageName = period > 0 ? index.substring(0, period) : null;
+        String className = index.substring(period + 1);
+
+        StringBuilder source = new StringBuilder();
+        if (packageName != null) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import java.util.HashMap;\n");
+        source.append("import java.util.Map;\n\n");
+        source.append("import xyz.mumiao.mmbus.SubscriberIndex;\n");
+        source.append("import xyz.mumiao.mmbus.SubscriberInfo;\n");
+        source.append("import xyz.mumiao.mmbus.SubscriberMethod;\n\n");
+        source.append("/** This class is generated by mmbus-compiler, do not edit. */\n");
+        source.append("public class ").append(className).append(" implements SubscriberIndex {\n\n");
+        source.append("    private static final Map<Class<?>, SubscriberInfo> SUBSCRIBER_INDEX = new HashMap<Class<?>, SubscriberInfo>();\n\n");
+        source.append("    static {\n");
+        List<TypeElement> types = new ArrayList<TypeElement>(interfaces.size());
+        for (String name : interfaces) {
+            types.add(processingEnv.getElementUtils().getTypeElement(name));
+        }
+        for (TypeElement type : types) {
+            source.append("        putIndex(new SubscriberInfo(").append(type.getQualifiedName()).append(".class, new ")
+                    .append(invokerName(type)).append("()");
+            for (ExecutableElement method : subscriberMethods(type)) {
+                source.append(",\n                new SubscriberMethod(\"").append(method.getSimpleName()).append("\", ")
+                        .append(THREAD_MODE).append(".").append(subscribeValue(type, method, "threadMode", "POSTING"))
+                        .append(", ").append(subscribeValue(type, method, "priority", "0"));
+                List<? extends VariableElement> parameters = method.getParameters();
+                for (VariableElement parameter : parameters) {
+                    source.append(", ").append(classLiteral(parameter.asType()));
+                }
+                source.append(")");
+            }
+            source.append("));\n");
+        }
+        source.append("    }\n\n");
+        source.append("    private static void putIndex(SubscriberInfo info) {\n");
+        source.append("        SUBSCRIBER_INDEX.put(info.getKeyClass(), info);\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public SubscriberInfo getSubscriberInfo(Class<?> keyClass) {\n");
+        source.append("        return SUBSCRIBER_INDEX.get(keyClass);\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        Element[] originatingElements = types.toArray(new Element[types.size()]);
+        writeSource(index, source.toString(), originatingElements);
+    }
+
+    /**
+     * Writes {@code <Interface>_MMBusInvoker} next to the interface. Method indexes follow the order written into the
+     * subscriber index by {@link #writeIndex(String)}.
+     */
+    private void writeInvoker(TypeElement type) {
+        String invokerName = invokerName(type);
+        int period = invokerName.lastIndexOf('.');
+        String packageName = period > 0 ? invokerName.substring(0, period) : null;
+        String className = invokerName.substring(period + 1);
+
+        StringBuilder source = new StringBuilder();
+        if (packageName != null) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import xyz.mumiao.mmbus.EventInvoker;\n\n");
+        source.append("/** This class is generated by mmbus-compiler, do not edit. */\n");
+        source.append("public final class ").append(className).append(" implements EventInvoker {\n\n");
+        source.append("    @Override\n");
+        source.append("    @SuppressWarnings(\"unchecked\")\n");
+        source.append("    public void invoke(Object target, int methodIndex, Object[] args) throws Throwable {\n");
+        source.append("        ").append(type.getQualifiedName()).append(" listener = (")
+                .append(type.getQualifiedName()).append(") target;\n");
+        source.append("        switch (methodIndex) {\n");
+        List<ExecutableElement> methods = subscriberMethods(type);
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            source.append("            case ").append(i).append(":\n");
+            source.append("                listener.").append(method.getSimpleName()).append("(");
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int j = 0; j < parameters.size(); j++) {
+                if (j > 0) {
+                    source.append(", ");
+                }
+                source.append("(").append(castType(parameters.get(j).asType())).append(") args[").append(j).append("]");
+            }
+            source.append(");\n");
+            source.append("                return;\n");
+        }
+        source.append("            default:\n");
+        source.append("                throw new IllegalArgumentException(\"Unknown method index \" + methodIndex + \" of ")
+                .append(type.getQualifiedName()).append("\");\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        writeSource(invokerName, source.toString(), type);
+    }
+
+    private void writeSource(String name, String source, Element... originatingElements) {
+        Writer writer = null;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(name, originatingElements);
+            writer = file.openWriter();
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + name + ": " + e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private List<ExecutableElement> subscriberMethods(TypeElement type) {
+        List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.STATIC)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Mirrors {@code ThreadMode.of(Method)}: a {@code @Subscribe} on the method replaces the one on the interface as a
+     * whole, attributes it leaves out take their defaults.
+     */
+    private String subscribeValue(TypeElement type, ExecutableElement method, String name, String defaultValue) {
+        AnnotationMirror subscribe = subscribeMirror(method);
+        if (subscribe == null) {
+            subscribe = subscribeMirror(type);
+        }
+        if (subscribe != null) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : subscribe.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(name)) {
+                    Object value = entry.getValue().getValue();
+                    return value instanceof VariableElement
+                            ? ((VariableElement) value).getSimpleName().toString() : String.valueOf(value);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private AnnotationMirror subscribeMirror(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(SUBSCRIBE)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Nested interfaces are flattened into the name, {@code a.Outer.Listener} gets {@code a.Outer_Listener_MMBusInvoker}.
+     */
+    private String invokerName(TypeElement type) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String simpleNames = type.getSimpleName().toString();
+        for (Element enclosing = type.getEnclosingElement(); enclosing.getKind() != ElementKind.PACKAGE;
+             enclosing = enclosing.getEnclosingElement()) {
+            simpleNames = enclosing.getSimpleName() + "_" + simpleNames;
+        }
+        return packageName.isEmpty() ? simpleNames + INVOKER_SUFFIX : packageName + "." + simpleNames + INVOKER_SUFFIX;
+    }
+
+    /**
+     * Arguments arrive boxed, a cast to the wrapper type lets the call unbox them.
+     */
+    private String castType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String classLiteral(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        return erased.toString() + ".class";
+    }
+}
@@ -0,0 +1,57 @@
+package xyz.mumiao.mmbus;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers {@link ThreadMode#ASYNC} events on a bounded pool shared by all buses. Deliveries start in the order
+ * they were queued but run concurrently: the bus keeps its own queue and submits itself once per delivery, each run
+ * starting the oldest delivery still queued.
+ */
+final class AsyncPoster extends DeliveryPoster implements Runnable {
+
+    static final int POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    static final ExecutorService EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new DeliveryThread(r, "MMBus-async-" + count.incrementAndGet());
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    AsyncPoster(MMBus bus) {
+        super(bus);
+    }
+
+    @Override
+    void schedule() {
+        EXECUTOR.execute(this);
+    }
+
+    @Override
+    boolean isDeliveryThread() {
+        return Thread.currentThread() instanceof DeliveryThread;
+    }
+
+    @Override
+    public void run() {
+        // null if the delivery was dropped to make room
+        PendingDelivery delivery = poll();
+        if (delivery != null) {
+            delivery.run();
+        }
+    }
+}
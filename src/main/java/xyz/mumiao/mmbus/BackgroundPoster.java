@@ -0,0 +1,65 @@
+package xyz.mumiao.mmbus;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers {@link ThreadMode#BACKGROUND} events one after another on the background thread shared by all buses.
+ */
+final class BackgroundPoster extends DeliveryPoster implements Runnable {
+
+    /**
+     * Single thread shared by every bus, stopped when idle.
+     */
+    static final ExecutorService EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new DeliveryThread(r, "MMBus-background");
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private final AtomicBoolean executorRunning = new AtomicBoolean();
+
+    BackgroundPoster(MMBus bus) {
+        super(bus);
+    }
+
+    @Override
+    void schedule() {
+        if (executorRunning.compareAndSet(false, true)) {
+            EXECUTOR.execute(this);
+        }
+    }
+
+    @Override
+    boolean isDeliveryThread() {
+        return Thread.currentThread() instanceof DeliveryThread;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            PendingDelivery delivery = poll();
+            if (delivery == null) {
+                executorRunning.set(false);
+                // a delivery queued between the poll and the reset did not schedule a new run
+                if (isQueueEmpty() || !executorRunning.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            delivery.run();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package xyz.mumiao.mmbus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent cache holding at most {@code maxSize} entries. When full, a quarter of the entries is dropped in hash
+ * order before the next put; this is cheaper than keeping an LRU order on every read, and entries that are still
+ * used come back on their next miss.
+ *
+ * <p>Reads never lock. Hits and misses are counted so the hit rate can be checked; the counters are plain fields, so
+ * counts from concurrent readers may be lost, which keeps a hit down to a single map read.
+ */
+final class BoundedCache<K, V> {
+
+    private final ConcurrentHashMap<K, V> map;
+    private final int maxSize;
+    private long hitCount;
+    private long missCount;
+
+    BoundedCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.map = new ConcurrentHashMap<K, V>();
+    }
+
+    V get(K key) {
+        V value = map.get(key);
+        if (value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return value;
+    }
+
+    void put(K key, V value) {
+        if (map.size() >= maxSize && !map.containsKey(key)) {
+            evict();
+        }
+        map.put(key, value);
+    }
+
+    /**
+     * @return the value already cached for {@code key}, or null after caching {@code value}.
+     */
+    V putIfAbsent(K key, V value) {
+        if (map.size() >= maxSize && !map.containsKey(key)) {
+            evict();
+        }
+        return map.putIfAbsent(key, value);
+    }
+
+    List<V> values() {
+        return new ArrayList<V>(map.values());
+    }
+
+    void clear() {
+        map.clear();
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    long hitCount() {
+        return hitCount;
+    }
+
+    long missCount() {
+        return missCount;
+    }
+
+    private void evict() {
+        int toRemove = Math.max(1, maxSize / 4);
+        Iterator<K> iterator = map.keySet().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package xyz.mumiao.mmbus;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free queue of work handed over to another thread, unbounded unless a limit is set with
+ * {@link #setLimit(int, OverflowPolicy)}. The bound is enforced by reserving a slot in {@link #pending} before
+ * queueing; only {@link OverflowPolicy#BLOCK} takes a lock, and only while the queue is full, never while the work
+ * runs.
+ *
+ * <p>Shared by the {@link DeliveryPoster}s and the {@link CrossThreadPostQueue}, so every queue of the bus follows the
+ * same {@link OverflowPolicy}.
+ */
+abstract class BoundedQueue<E> {
+
+    /** Elements queued and not yet taken. */
+    final AtomicInteger pending = new AtomicInteger();
+    /** Elements discarded or merged because the queue was full. */
+    final AtomicLong dropped = new AtomicLong();
+    /** Offers that waited for room in the queue. */
+    final AtomicLong delayed = new AtomicLong();
+
+    private final ConcurrentLinkedQueue<E> queue = new ConcurrentLinkedQueue<E>();
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile OverflowPolicy policy = OverflowPolicy.BLOCK;
+    /** Monitor of producers waiting under {@link OverflowPolicy#BLOCK}. */
+    private final Object roomLock = new Object();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    void setLimit(int capacity, OverflowPolicy policy) {
+        this.policy = policy;
+        this.capacity = capacity;
+        wakeProducers();
+    }
+
+    /**
+     * Queues {@code element}, or applies the {@link OverflowPolicy} if the queue is full.
+     *
+     * @return false if {@code element} was discarded or merged into a queued one instead.
+     */
+    final boolean offer(E element) {
+        if (!reserve()) {
+            switch (policy) {
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    return false;
+                case COALESCE:
+                    if (replaceQueued(element)) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+                    dropOldest();
+                    break;
+                case DROP_OLDEST:
+                    dropOldest();
+                    break;
+                default:
+                    awaitRoom();
+            }
+        }
+        queue.offer(element);
+        schedule();
+        return true;
+    }
+
+    /**
+     * Makes sure the queue will be drained, called after each offer.
+     */
+    abstract void schedule();
+
+    /**
+     * @return whether the calling thread drains this queue or another queue of the bus, so it must not wait for room.
+     */
+    abstract boolean isDeliveryThread();
+
+    /**
+     * @return whether {@code newer} may take the place of {@code queued} under {@link OverflowPolicy#COALESCE}.
+     */
+    abstract boolean isSameTarget(E queued, E newer);
+
+    /**
+     * Moves the payload of {@code newer} into {@code queued}, keeping its place.
+     *
+     * @return false if {@code queued} has already been taken.
+     */
+    abstract boolean replace(E queued, E newer);
+
+    /**
+     * Called with an element dropped to make room, so its payload can no longer be replaced.
+     */
+    abstract void discard(E element);
+
+    /**
+     * Takes the oldest queued element, {@code null} if there is none.
+     */
+    final E poll() {
+        E element = queue.poll();
+        if (element != null) {
+            pending.decrementAndGet();
+            if (waitingProducers.get() != 0) {
+                wakeProducers();
+            }
+        }
+        return element;
+    }
+
+    final boolean isQueueEmpty() {
+        return queue.isEmpty();
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = pending.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes the place of the oldest queued element, or reserves a slot freed meanwhile. The new element is only
+     * counted in {@link #pending} once an element was actually removed, so the count does not drift past the capacity.
+     */
+    private void dropOldest() {
+        while (true) {
+            E oldest = poll();
+            if (oldest != null) {
+                discard(oldest);
+                dropped.incrementAndGet();
+                pending.incrementAndGet();
+                return;
+            }
+            if (reserve()) {
+                return;
+            }
+            // the slots are reserved by producers that have not offered yet
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Replaces the payload of the newest element queued for the same target as {@code element}, keeping its place.
+     */
+    private boolean replaceQueued(E element) {
+        E newest = null;
+        for (E queued : queue) {
+            if (isSameTarget(queued, element)) {
+                newest = queued;
+            }
+        }
+        return newest != null && replace(newest, element);
+    }
+
+    private void awaitRoom() {
+        if (isDeliveryThread()) {
+            pending.incrementAndGet();
+            return;
+        }
+        delayed.incrementAndGet();
+        waitingProducers.incrementAndGet();
+        boolean interrupted = false;
+        try {
+            synchronized (roomLock) {
+                while (!reserve()) {
+                    if (policy != OverflowPolicy.BLOCK) {
+                        pending.incrementAndGet();
+                        return;
+                    }
+                    try {
+                        roomLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            waitingProducers.decrementAndGet();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void wakeProducers() {
+        synchronized (roomLock) {
+            roomLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a subscriber interface for the compile-time subscriber index.
+ *
+ * <p>Interfaces carrying this annotation are written into the index generated by {@code mmbus-compiler}, so
+ * {@link MMBus#register(Class, Object)} can build their handlers without scanning them with reflection. Interfaces
+ * without it keep working through the runtime finders.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface BusInterface {
+}
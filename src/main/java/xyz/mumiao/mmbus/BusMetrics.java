@@ -0,0 +1,244 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional instrumentation of one {@link MMBus}, installed with {@link MMBus#setMetrics(BusMetrics)}: posts per key,
+ * the deepest dispatch queue, and the invocation latency of every handler method. Without metrics the bus pays a
+ * single null check per post and per delivery.
+ *
+ * <p>Recording never locks: counters and histograms are atomics, and their maps only grow on the first post of a
+ * key or the first call of a handler method.
+ */
+public final class BusMetrics {
+
+    /**
+     * Called on the handler's thread after a handler took at least the slow-handler threshold. It should return
+     * quickly, e.g. log or hand the report to another thread.
+     */
+    public interface SlowHandlerListener {
+        /**
+         * @param handler      the slow handler method, as {@code Interface#method}.
+         * @param nanos        how long the call took.
+         * @param onMainThread whether it ran on the main thread.
+         */
+        void onSlowHandler(String handler, long nanos, boolean onMainThread);
+    }
+
+    /** Posts by subscriber interface, then by event class (non-strict) or method name (strict). */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Object, AtomicLong>> postCounts =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<Object, AtomicLong>>();
+    private final ConcurrentMap<Method, LatencyHistogram> handlerLatencies = new ConcurrentHashMap<Method, LatencyHistogram>();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final long slowHandlerNanos;
+    private final SlowHandlerListener slowHandlerListener;
+
+    /**
+     * Metrics without slow-handler detection.
+     */
+    public BusMetrics() {
+        this(0, null);
+    }
+
+    /**
+     * @param slowHandlerThresholdMillis calls taking at least this long are reported to {@code listener}.
+     */
+    public BusMetrics(long slowHandlerThresholdMillis, SlowHandlerListener listener) {
+        if (listener != null && slowHandlerThresholdMillis <= 0) {
+            throw new IllegalArgumentException("slowHandlerThresholdMillis must be positive: " + slowHandlerThresholdMillis);
+        }
+        this.slowHandlerNanos = TimeUnit.MILLISECONDS.toNanos(slowHandlerThresholdMillis);
+        this.slowHandlerListener = listener;
+    }
+
+    /**
+     * Counts a post of {@code key} to {@code keyClass}: the event class of a non-strict post, the method name of a
+     * strict one.
+     */
+    void recordPost(Class<?> keyClass, Object key) {
+        ConcurrentMap<Object, AtomicLong> counts = postCounts.get(keyClass);
+        if (counts == null) {
+            ConcurrentMap<Object, AtomicLong> countsCreation = new ConcurrentHashMap<Object, AtomicLong>();
+            counts = postCounts.putIfAbsent(keyClass, countsCreation);
+            if (counts == null) {
+                counts = countsCreation;
+            }
+        }
+        AtomicLong count = counts.get(key);
+        if (count == null) {
+            AtomicLong countCreation = new AtomicLong();
+            count = counts.putIfAbsent(key, countCreation);
+            if (count == null) {
+                count = countCreation;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    void recordQueueDepth(int depth) {
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            // retry with the depth another thread just recorded
+        }
+    }
+
+    void recordInvocation(EventHandler handler, long nanos, boolean onMainThread) {
+        Method method = handler.getMethod();
+        LatencyHistogram histogram = handlerLatencies.get(method);
+        if (histogram == null) {
+            LatencyHistogram histogramCreation = new LatencyHistogram();
+            histogram = handlerLatencies.putIfAbsent(method, histogramCreation);
+            if (histogram == null) {
+                histogram = histogramCreation;
+            }
+        }
+        histogram.record(nanos);
+        if (slowHandlerListener != null && nanos >= slowHandlerNanos) {
+            slowHandlerListener.onSlowHandler(nameOf(method), nanos, onMainThread);
+        }
+    }
+
+    /**
+     * Copies the current values. {@code pendingMain}, {@code pendingBackground} and {@code pendingAsync} are the
+     * deliveries the bus has waiting for their threads.
+     */
+    Snapshot snapshot(int pendingMain, int pendingBackground, int pendingAsync) {
+        Map<String, Long> posts = new LinkedHashMap<String, Long>();
+        for (Map.Entry<Class<?>, ConcurrentMap<Object, AtomicLong>> byInterface : postCounts.entrySet()) {
+            for (Map.Entry<Object, AtomicLong> byKey : byInterface.getValue().entrySet()) {
+                Object key = byKey.getKey();
+                String name = key instanceof Class ? ((Class<?>) key).getName() : String.valueOf(key);
+                posts.put(byInterface.getKey().getName() + "#" + name, byKey.getValue().get());
+            }
+        }
+        Map<String, LatencySnapshot> latencies = new LinkedHashMap<String, LatencySnapshot>();
+        for (Map.Entry<Method, LatencyHistogram> entry : handlerLatencies.entrySet()) {
+            latencies.put(nameOf(entry.getKey()), entry.getValue().snapshot());
+        }
+        return new Snapshot(posts, latencies, maxQueueDepth.get(), pendingMain, pendingBackground, pendingAsync);
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        postCounts.clear();
+        handlerLatencies.clear();
+        maxQueueDepth.set(0);
+    }
+
+    private static String nameOf(Method method) {
+        return method.getDeclaringClass().getName() + "#" + method.getName();
+    }
+
+    /**
+     * Values of a {@link BusMetrics} at one point in time, see {@link MMBus#snapshotMetrics()}.
+     */
+    public static final class Snapshot {
+        /** Posts by {@code Interface#EventClass} (non-strict) or {@code Interface#method} (strict). */
+        public final Map<String, Long> postCounts;
+        /** Handler latencies by {@code Interface#method}. */
+        public final Map<String, LatencySnapshot> handlerLatencies;
+        /** Deepest dispatch queue of a posting thread. */
+        public final int maxQueueDepth;
+        /** Deliveries waiting for the main thread, the background thread and the async pool. */
+        public final int pendingMain;
+        public final int pendingBackground;
+        public final int pendingAsync;
+
+        Snapshot(Map<String, Long> postCounts, Map<String, LatencySnapshot> handlerLatencies, int maxQueueDepth,
+                 int pendingMain, int pendingBackground, int pendingAsync) {
+            this.postCounts = Collections.unmodifiableMap(postCounts);
+            this.handlerLatencies = Collections.unmodifiableMap(handlerLatencies);
+            this.maxQueueDepth = maxQueueDepth;
+            this.pendingMain = pendingMain;
+            this.pendingBackground = pendingBackground;
+            this.pendingAsync = pendingAsync;
+        }
+
+        /**
+         * The snapshot as a JSON object, for upload or comparison between runs.
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"maxQueueDepth\":").append(maxQueueDepth)
+                    .append(",\"pendingMain\":").append(pendingMain)
+                    .append(",\"pendingBackground\":").append(pendingBackground)
+                    .append(",\"pendingAsync\":").append(pendingAsync)
+                    .append(",\"postCounts\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : postCounts.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendString(json, entry.getKey());
+                json.append(':').append(entry.getValue());
+            }
+            json.append("},\"handlerLatencies\":{");
+            first = true;
+            for (Map.Entry<String, LatencySnapshot> entry : handlerLatencies.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendString(json, entry.getKey());
+                LatencySnapshot latency = entry.getValue();
+                json.append(":{\"count\":").append(latency.count)
+                        .append(",\"totalNanos\":").append(latency.totalNanos)
+                        .append(",\"maxNanos\":").append(latency.maxNanos)
+                        .append(",\"p50Nanos\":").append(latency.p50Nanos)
+                        .append(",\"p90Nanos\":").append(latency.p90Nanos)
+                        .append(",\"p99Nanos\":").append(latency.p99Nanos)
+                        .append('}');
+            }
+            return json.append("}}").toString();
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\');
+                }
+                json.append(c);
+            }
+            json.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return toJson();
+        }
+    }
+
+    /**
+     * Latency of one handler method. Percentiles are the upper bound of their power-of-two bucket.
+     */
+    public static final class LatencySnapshot {
+        public final long count;
+        public final long totalNanos;
+        public final long maxNanos;
+        public final long p50Nanos;
+        public final long p90Nanos;
+        public final long p99Nanos;
+
+        LatencySnapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Coalesces the events delivered to each subscriber of the annotated interface, see {@link CoalescePolicy}.
+ *
+ * <p>Delayed deliveries of {@link CoalescePolicy#DEBOUNCE} and {@link CoalescePolicy#THROTTLE} are posted from the
+ * main looper when the event was posted on the main thread, from the bus timer thread otherwise, and delivered on
+ * the thread of the handler's {@link ThreadMode}; only {@link ThreadMode#POSTING} handlers run on the timer thread.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Coalesce {
+
+    CoalescePolicy value();
+
+    /** Window of {@link CoalescePolicy#DEBOUNCE} and {@link CoalescePolicy#THROTTLE}, must be positive for them. */
+    long windowMillis() default 0;
+}
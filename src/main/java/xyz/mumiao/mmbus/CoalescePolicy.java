@@ -0,0 +1,27 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * How {@link MMBus} merges frequent events for handlers that only need the latest one, declared with
+ * {@link Coalesce}.
+ */
+public enum CoalescePolicy {
+
+    /**
+     * An event still waiting for the handler is replaced by the newer one, keeping its place: either queued in the
+     * current drain (events posted while dispatching and {@code postAll} batches), or, for {@link ThreadMode#MAIN},
+     * {@link ThreadMode#BACKGROUND} and {@link ThreadMode#ASYNC} handlers, queued for the handler's thread and not
+     * started yet.
+     */
+    LATEST,
+
+    /**
+     * The handler is called once the events stopped for {@link Coalesce#windowMillis()}, with the last of them.
+     */
+    DEBOUNCE,
+
+    /**
+     * The handler is called at most once per {@link Coalesce#windowMillis()}: right away for the first event, and at
+     * the end of the window with the last event that arrived during it.
+     */
+    THROTTLE
+}
@@ -0,0 +1,149 @@
+package xyz.mumiao.mmbus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Carries posts made through {@link MMBus#postFromAnyThread} to the main looper. Producers only append to a lock-free
+ * queue; a single message then turns up to {@link #MAX_POSTS_PER_MESSAGE} posts into deliveries and drains them at
+ * once, so a burst from worker threads costs one looper message per batch instead of one per event.
+ *
+ * <p>The queue shares the limit and {@link OverflowPolicy} set for {@link ThreadMode#MAIN}. Under
+ * {@link OverflowPolicy#COALESCE} a post merges into the newest one queued for the same interface and method.
+ */
+final class CrossThreadPostQueue extends BoundedQueue<CrossThreadPostQueue.PendingPost> implements Handler.Callback {
+
+    static final int MAX_POSTS_PER_MESSAGE = 256;
+
+    /**
+     * A post waiting for the main looper: the single event, or the method name and arguments of a strict post. Its
+     * payload may still be replaced under {@link OverflowPolicy#COALESCE} until it is taken.
+     */
+    static final class PendingPost {
+        final Class<?> keyClass;
+        final String methodName;
+        private Object event;
+        private Object[] args;
+        private boolean taken;
+
+        PendingPost(Class<?> keyClass, String methodName, Object event, Object[] args) {
+            this.keyClass = keyClass;
+            this.methodName = methodName;
+            this.event = event;
+            this.args = args;
+        }
+
+        synchronized boolean replace(PendingPost newer) {
+            if (taken) {
+                return false;
+            }
+            event = newer.event;
+            args = newer.args;
+            return true;
+        }
+
+        /**
+         * Marks the post as taken off the queue, to be posted or discarded; its payload is final from now on.
+         */
+        synchronized void take() {
+            taken = true;
+        }
+
+        synchronized Object event() {
+            return event;
+        }
+
+        synchronized Object[] args() {
+            return args;
+        }
+    }
+
+    private final MMBus bus;
+    private final AtomicBoolean handlerActive = new AtomicBoolean();
+    private final Handler handler;
+
+    CrossThreadPostQueue(MMBus bus) {
+        this.bus = bus;
+        handler = new Handler(Looper.getMainLooper(), this);
+    }
+
+    @Override
+    void schedule() {
+        if (handlerActive.compareAndSet(false, true)) {
+            handler.sendEmptyMessage(0);
+        }
+    }
+
+    /**
+     * Posts made on the main looper do not come here, and the MMBus threads must not wait on it either: the main
+     * thread may itself be waiting for room in their queues.
+     */
+    @Override
+    boolean isDeliveryThread() {
+        return Looper.myLooper() == Looper.getMainLooper() || Thread.currentThread() instanceof DeliveryPoster.DeliveryThread;
+    }
+
+    @Override
+    boolean isSameTarget(PendingPost queued, PendingPost newer) {
+        return queued.keyClass == newer.keyClass
+                && (queued.methodName == null ? newer.methodName == null : queued.methodName.equals(newer.methodName));
+    }
+
+    @Override
+    boolean replace(PendingPost queued, PendingPost newer) {
+        return queued.replace(newer);
+    }
+
+    @Override
+    void discard(PendingPost post) {
+        post.take();
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        int queued = 0;
+        try {
+            while (true) {
+                PendingPost post = poll();
+                if (post == null) {
+                    handlerActive.set(false);
+                    // a post queued between the poll and the reset found the handler still active
+                    if (isQueueEmpty() || !handlerActive.compareAndSet(false, true)) {
+                        return true;
+                    }
+                    continue;
+                }
+                post.take();
+                try {
+                    bus.enqueueCrossThreadPost(post);
+                } catch (RuntimeException e) {
+                    Log.e("MMBus", "Could not deliver event posted from another thread to " + post.keyClass.getName(), e);
+                }
+                if (++queued == MAX_POSTS_PER_MESSAGE) {
+                    handler.sendEmptyMessage(0);
+                    return true;
+                }
+            }
+        } finally {
+            drain();
+        }
+    }
+
+    /**
+     * Dispatches the batch; a throwing handler is logged and the rest of the batch still delivered.
+     */
+    private void drain() {
+        while (true) {
+            try {
+                bus.dispatchQueuedEvents();
+                return;
+            } catch (RuntimeException e) {
+                Log.e("MMBus", "Handler failed while delivering events posted from another thread", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package xyz.mumiao.mmbus;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts of one signature that reached no handler: the subscriber interface, the method name (empty for non-strict
+ * posts) and the runtime argument classes. Each signature is checked against the interface once, when its first post
+ * finds no handler, and only counted afterwards; see {@link MMBus#setDeadEventListener(Listener)}.
+ */
+public final class DeadEvent {
+
+    /**
+     * Called once per signature, on the posting thread, by the first post of it that reached no handler. Later posts
+     * of the signature only increment {@link #getCount()}.
+     */
+    public interface Listener {
+        void onDeadEvent(DeadEvent deadEvent);
+    }
+
+    private final Class<?> keyClass;
+    private final String methodName;
+    private final Class<?>[] argTypes;
+    private final boolean signatureDeclared;
+    final AtomicLong count = new AtomicLong();
+
+    DeadEvent(HandlerKey signature, boolean signatureDeclared) {
+        this.keyClass = signature.keyClass;
+        this.methodName = signature.methodName;
+        this.argTypes = signature.argTypes;
+        this.signatureDeclared = signatureDeclared;
+    }
+
+    public Class<?> getKeyClass() {
+        return keyClass;
+    }
+
+    /**
+     * @return the posted method name, empty for a non-strict post.
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public Class<?>[] getArgTypes() {
+        return argTypes.clone();
+    }
+
+    /**
+     * @return false if no method of the interface accepts these arguments, i.e. the post has a wrong method name or
+     * wrong argument types rather than just no subscriber.
+     */
+    public boolean isSignatureDeclared() {
+        return signatureDeclared;
+    }
+
+    /**
+     * @return how many posts of this signature reached no handler so far.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public String toString() {
+        return "[DeadEvent " + keyClass.getName() + (methodName.isEmpty() ? "" : "#" + methodName)
+                + Arrays.toString(argTypes) + (signatureDeclared ? " no subscriber" : " invalid signature")
+                + ", count=" + count.get() + "]";
+    }
+}
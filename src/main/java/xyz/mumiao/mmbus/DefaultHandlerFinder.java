@@ -12,6 +12,16 @@ class DefaultHandlerFinder implements HandlerFinder {
      */
     private final Map<Class<?>, Map<Class<?>, Method>> SUBSCRIBERS_CACHE = new HashMap<Class<?>, Map<Class<?>, Method>>(); //接口类：（方法入参类：方法名） ，因此能保证一一对应，禁止一个接口有两个函数传参相同
 
+    /**
+     * Thread mode of each cached subscriber method.
+     */
+    private final Map<Method, ThreadMode> THREAD_MODES_CACHE = new HashMap<Method, ThreadMode>();
+
+    /**
+     * Priority of each cached subscriber method.
+     */
+    private final Map<Method, Integer> PRIORITIES_CACHE = new HashMap<Method, Integer>();
+
     private void loadAnnotatedMethods(Class<?> listenerClass) {
         if (!listenerClass.isInterface())
             throw new IllegalArgumentException("Class: " + listenerClass + " must be interface.");
@@ -30,11 +40,6 @@ class DefaultHandlerFinder implements HandlerFinder {
             }
 
             Class<?> eventType = parameterTypes[0];
-            if (eventType.isInterface()) {
-                throw new IllegalArgumentException("Method " + method + " has @Subscribe annotation on " + eventType
-                        + " which is an interface.  Subscription must be on a concrete class type.");
-            }
-
             if ((method.getModifiers() & Modifier.PUBLIC) == 0) {
                 throw new IllegalArgumentException("Method " + method + " has @Subscribe annotation on " + eventType
                         + " but is not 'public'.");
@@ -45,14 +50,16 @@ class DefaultHandlerFinder implements HandlerFinder {
                 throw new IllegalArgumentException("Method " + method + " has parameterType " + eventType + " but has already exist.");
             }
             subscriberMethods.put(eventType, method);
+            THREAD_MODES_CACHE.put(method, ThreadMode.of(method));
+            PRIORITIES_CACHE.put(method, ThreadMode.priorityOf(method));
         }
         SUBSCRIBERS_CACHE.put(listenerClass, subscriberMethods);
 
     }
 
     @Override
-    public <T> Map<String, EventHandler<T>> findAllSubscribers(Class<T> cls, T listener) {
-        Map<String, EventHandler<T>> handlersInMethod = new HashMap<String, EventHandler<T>>();
+    public <T> Map<HandlerKey, EventHandler<T>> findAllSubscribers(Class<T> cls, T listener) {
+        Map<HandlerKey, EventHandler<T>> handlersInMethod = new HashMap<HandlerKey, EventHandler<T>>();
 
         if (!SUBSCRIBERS_CACHE.containsKey(cls)) {
             loadAnnotatedMethods(cls);
@@ -60,18 +67,15 @@ class DefaultHandlerFinder implements HandlerFinder {
         Map<Class<?>, Method> methods = SUBSCRIBERS_CACHE.get(cls);
         if (!methods.isEmpty()) {
             for (Map.Entry<Class<?>, Method> e : methods.entrySet()) {
-                handlersInMethod.put(keyFromSubscribers(cls,"", e.getKey()), new EventHandler<T>(listener, e.getValue()));
+                handlersInMethod.put(keyFromSubscribers(cls,"", e.getKey()), new EventHandler<T>(listener, e.getValue(),
+                        THREAD_MODES_CACHE.get(e.getValue()), PRIORITIES_CACHE.get(e.getValue()), null, -1));
             }
         }
         return handlersInMethod;
     }
 
     @Override
-    public String keyFromSubscribers(Class<?> keyClass, String methodName, Class<?>... eventClass) {
-        StringBuilder methodParaStr = new StringBuilder();
-        for (Class<?> cls: eventClass ) {
-            methodParaStr.append("-").append(cls.getName());
-        }
-        return keyClass.getName() + "-" + methodParaStr.toString();
+    public HandlerKey keyFromSubscribers(Class<?> keyClass, String methodName, Class<?>... eventClass) {
+        return new HandlerKey(keyClass, "", eventClass);
     }
 }
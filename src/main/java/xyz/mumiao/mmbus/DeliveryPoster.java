@@ -0,0 +1,92 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Hands deliveries over to another thread for {@link ThreadMode#MAIN}, {@link ThreadMode#BACKGROUND} and
+ * {@link ThreadMode#ASYNC} handlers, through a {@link BoundedQueue}. Under {@link OverflowPolicy#COALESCE} a delivery
+ * merges into the newest one queued for the same handler.
+ */
+abstract class DeliveryPoster extends BoundedQueue<DeliveryPoster.PendingDelivery> {
+
+    final MMBus bus;
+
+    DeliveryPoster(MMBus bus) {
+        this.bus = bus;
+    }
+
+    /**
+     * @param args arguments owned by the delivery, callers copy pooled arrays first.
+     * @return the queued delivery, {@code null} if it was discarded or merged because the queue was full.
+     */
+    final PendingDelivery enqueue(EventHandler handler, Object[] args) {
+        PendingDelivery delivery = new PendingDelivery(this, handler, args);
+        return offer(delivery) ? delivery : null;
+    }
+
+    @Override
+    final boolean isSameTarget(PendingDelivery queued, PendingDelivery newer) {
+        return queued.handler == newer.handler;
+    }
+
+    @Override
+    final boolean replace(PendingDelivery queued, PendingDelivery newer) {
+        return queued.replaceArgs(newer.args);
+    }
+
+    @Override
+    final void discard(PendingDelivery delivery) {
+        delivery.discard();
+    }
+
+    /**
+     * Thread of the MMBus executors, see {@link #isDeliveryThread()}.
+     */
+    static final class DeliveryThread extends Thread {
+        DeliveryThread(Runnable target, String name) {
+            super(target, name);
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * A delivery waiting for its thread. Its arguments may still be replaced, under {@link OverflowPolicy#COALESCE} or
+     * {@link CoalescePolicy#LATEST}, until it starts or is discarded.
+     */
+    static final class PendingDelivery implements Runnable {
+        final DeliveryPoster poster;
+        final EventHandler handler;
+        private Object[] args;
+        /** Started or discarded, the arguments are final. */
+        private boolean started;
+
+        PendingDelivery(DeliveryPoster poster, EventHandler handler, Object[] args) {
+            this.poster = poster;
+            this.handler = handler;
+            this.args = args;
+        }
+
+        synchronized boolean replaceArgs(Object[] args) {
+            if (started) {
+                return false;
+            }
+            this.args = args;
+            return true;
+        }
+
+        synchronized void discard() {
+            started = true;
+            args = null;
+        }
+
+        @Override
+        public void run() {
+            Object[] args;
+            synchronized (this) {
+                started = true;
+                args = this.args;
+                // the coalescer may keep the delivery, not its payload
+                this.args = null;
+            }
+            poster.bus.invokeQueued(handler, args);
+        }
+    }
+}
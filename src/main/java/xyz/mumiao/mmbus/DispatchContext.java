@@ -0,0 +1,200 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Per-thread dispatch state of one {@link MMBus}: a ring buffer of queued deliveries and the reentrancy flag.
+ *
+ * <p>Slots are reused, so once the buffer has grown to the deepest queue seen on a thread, queueing and draining
+ * events allocates nothing. Single events are wrapped in a one-element argument array owned by their slot, which
+ * is cleared as soon as the delivery returns.
+ *
+ * <p>Each delivery also records the post it belongs to, so a handler can cancel the rest of its post.
+ */
+final class DispatchContext {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** True if the owning thread is currently dispatching an event. */
+    boolean isDispatching;
+
+    private EventHandler[] handlers = new EventHandler[INITIAL_CAPACITY];
+    private Object[][] args = new Object[INITIAL_CAPACITY][];
+    /** One-element argument arrays owned by each slot, for single events. */
+    private Object[][] singleArgs = newSingleArgs(INITIAL_CAPACITY, 0);
+    /** Post each queued delivery belongs to. */
+    private int[] posts = new int[INITIAL_CAPACITY];
+    /** Post that deliveries offered from now on belong to. */
+    private int currentPost;
+
+    private int head;
+    private int size;
+
+    /** Probe key of strict posts, see {@link #strictSignature(Class, String, Object[])}. */
+    private final HandlerKey strictProbe = new HandlerKey();
+    /** Argument class array of the probe key, by arity. */
+    private Class<?>[][] probeArgTypes = new Class<?>[4][];
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Starts a new post: deliveries offered until the next call belong to it.
+     */
+    void beginPost() {
+        currentPost++;
+    }
+
+    /**
+     * Queues {@code event} as the only argument of {@code handler}.
+     */
+    void offerSingle(EventHandler handler, Object event) {
+        int slot = nextSlot();
+        Object[] single = singleArgs[slot];
+        single[0] = event;
+        handlers[slot] = handler;
+        args[slot] = single;
+        posts[slot] = currentPost;
+    }
+
+    /**
+     * Queues {@code event} as the argument list of {@code handler}. The array is kept as-is, not copied.
+     */
+    void offer(EventHandler handler, Object[] event) {
+        int slot = nextSlot();
+        handlers[slot] = handler;
+        args[slot] = event;
+        posts[slot] = currentPost;
+    }
+
+    /**
+     * Replaces the payload of the newest delivery still queued for {@code handler}, keeping its place. The delivery
+     * being dispatched is never touched.
+     *
+     * @return false if nothing is queued for {@code handler}.
+     */
+    boolean replacePending(EventHandler handler, Object event, boolean single) {
+        int mask = handlers.length - 1;
+        int first = isDispatching ? 1 : 0;
+        for (int i = size - 1; i >= first; i--) {
+            int slot = (head + i) & mask;
+            if (handlers[slot] == handler) {
+                if (single) {
+                    Object[] singleArg = singleArgs[slot];
+                    singleArg[0] = event;
+                    args[slot] = singleArg;
+                } else {
+                    args[slot] = (Object[]) event;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the deliveries queued behind the oldest one for the same post. They are queued together, so they directly
+     * follow it.
+     */
+    void cancelRestOfPost() {
+        int mask = handlers.length - 1;
+        int post = posts[head];
+        for (int i = 1; i < size; i++) {
+            int slot = (head + i) & mask;
+            if (posts[slot] != post) {
+                break;
+            }
+            handlers[slot] = null;
+        }
+    }
+
+    /** Handler of the oldest queued delivery, {@code null} if it was cancelled; only valid while not empty. */
+    EventHandler peekHandler() {
+        return handlers[head];
+    }
+
+    /** Arguments of the oldest queued delivery; only valid while not empty. */
+    Object[] peekArgs() {
+        return args[head];
+    }
+
+    /**
+     * Releases the oldest queued delivery. Called after it was dispatched, so handlers posting while it runs never
+     * get its slot.
+     */
+    void removeHead() {
+        handlers[head] = null;
+        args[head] = null;
+        singleArgs[head][0] = null;
+        head = (head + 1) & (handlers.length - 1);
+        size--;
+    }
+
+    /**
+     * Fills this thread's probe key with the signature of a strict post of {@code args}. The key and its argument
+     * classes are reused by the next strict post, so it may only be looked up and must be copied to be kept.
+     */
+    HandlerKey strictSignature(Class<?> keyClass, String methodName, Object[] args) {
+        int arity = args.length;
+        if (arity >= probeArgTypes.length) {
+            Class<?>[][] newProbeArgTypes = new Class<?>[arity + 1][];
+            System.arraycopy(probeArgTypes, 0, newProbeArgTypes, 0, probeArgTypes.length);
+            probeArgTypes = newProbeArgTypes;
+        }
+        Class<?>[] argTypes = probeArgTypes[arity];
+        if (argTypes == null) {
+            argTypes = new Class<?>[arity];
+            probeArgTypes[arity] = argTypes;
+        }
+        for (int i = 0; i < arity; i++) {
+            argTypes[i] = args[i].getClass();
+        }
+        strictProbe.set(keyClass, methodName, argTypes);
+        return strictProbe;
+    }
+
+    private int nextSlot() {
+        if (size == handlers.length) {
+            grow();
+        }
+        int slot = (head + size) & (handlers.length - 1);
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = handlers.length;
+        int newCapacity = capacity << 1;
+        EventHandler[] newHandlers = new EventHandler[newCapacity];
+        Object[][] newArgs = new Object[newCapacity][];
+        Object[][] newSingleArgs = newSingleArgs(newCapacity, capacity);
+        int[] newPosts = new int[newCapacity];
+
+        int firstPart = capacity - head;
+        System.arraycopy(handlers, head, newHandlers, 0, firstPart);
+        System.arraycopy(handlers, 0, newHandlers, firstPart, head);
+        System.arraycopy(args, head, newArgs, 0, firstPart);
+        System.arraycopy(args, 0, newArgs, firstPart, head);
+        System.arraycopy(singleArgs, head, newSingleArgs, 0, firstPart);
+        System.arraycopy(singleArgs, 0, newSingleArgs, firstPart, head);
+        System.arraycopy(posts, head, newPosts, 0, firstPart);
+        System.arraycopy(posts, 0, newPosts, firstPart, head);
+
+        handlers = newHandlers;
+        args = newArgs;
+        singleArgs = newSingleArgs;
+        posts = newPosts;
+        head = 0;
+    }
+
+    private static Object[][] newSingleArgs(int capacity, int from) {
+        Object[][] singles = new Object[capacity][];
+        for (int i = from; i < capacity; i++) {
+            singles[i] = new Object[1];
+        }
+        return singles;
+    }
+}
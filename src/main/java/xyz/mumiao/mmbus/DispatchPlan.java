@@ -0,0 +1,30 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Immutable result of resolving one post: the registry keys of every type in the event's hierarchy and the handlers
+ * registered under them, in dispatch order.
+ *
+ * <p>A plan belongs to one subscriber interface and is only valid for the {@link #generation} of that interface it
+ * was built at; {@link MMBus#register(Class, Object)} and {@link MMBus#unregister(Class, Object)} advance the
+ * generation, and the next post builds a new plan.
+ *
+ * <p>A plan without handlers carries the {@link DeadEvent} of its signature, so posts that reach no handler are
+ * counted without looking the signature up again.
+ */
+final class DispatchPlan {
+
+    static final EventHandler[] NO_HANDLERS = new EventHandler[0];
+
+    final HandlerKey[] keys;
+    final EventHandler[] handlers;
+    final int generation;
+    /** Non-null if and only if {@link #handlers} is empty. */
+    final DeadEvent deadEvent;
+
+    DispatchPlan(HandlerKey[] keys, EventHandler[] handlers, int generation, DeadEvent deadEvent) {
+        this.keys = keys;
+        this.handlers = handlers;
+        this.generation = generation;
+        this.deadEvent = deadEvent;
+    }
+}
@@ -0,0 +1,166 @@
+package xyz.mumiao.mmbus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalescing state of one handler, see {@link CoalescePolicy}. Redundant events only overwrite the pending payload:
+ * they neither allocate nor reach the handler, except that merging into a delivery already queued for the handler's
+ * thread copies the arguments it keeps.
+ */
+final class EventCoalescer implements Runnable {
+
+    /**
+     * Timer for delayed deliveries of events posted off the main thread, shared by every bus.
+     */
+    static final ScheduledThreadPoolExecutor TIMER;
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new DeliveryPoster.DeliveryThread(r, "MMBus-timer");
+            }
+        });
+    }
+
+    private static Handler mainHandler;
+
+    private final MMBus bus;
+    private final EventHandler handler;
+    private final CoalescePolicy policy;
+    private final long windowMillis;
+
+    /** Newest delivery handed to the handler's thread, {@link CoalescePolicy#LATEST} only. */
+    private volatile DeliveryPoster.PendingDelivery queued;
+
+    /** Latest payload waiting for the timer: the single event, or the argument array of a strict post. */
+    private Object pending;
+    private boolean pendingSingle;
+    private boolean scheduled;
+    /** Debounce: time the pending payload is due. */
+    private long deadline;
+    /** Throttle: time of the last delivery. */
+    private long lastDelivery = Long.MIN_VALUE / 2;
+
+    EventCoalescer(MMBus bus, EventHandler handler, Coalesce coalesce) {
+        if (coalesce.value() != CoalescePolicy.LATEST && coalesce.windowMillis() <= 0) {
+            throw new IllegalArgumentException("@Coalesce(" + coalesce.value() + ") requires a positive windowMillis.");
+        }
+        this.bus = bus;
+        this.handler = handler;
+        this.policy = coalesce.value();
+        this.windowMillis = coalesce.windowMillis();
+    }
+
+    /**
+     * Queues {@code payload} for the handler or merges it into the pending one.
+     *
+     * @param single whether {@code payload} is a single event rather than an argument array.
+     */
+    void offer(DispatchContext context, Object payload, boolean single) {
+        switch (policy) {
+            case LATEST:
+                if (context.replacePending(handler, payload, single)) {
+                    return;
+                }
+                DeliveryPoster.PendingDelivery queued = this.queued;
+                if (queued != null && queued.replaceArgs(single ? new Object[]{payload} : ((Object[]) payload).clone())) {
+                    return;
+                }
+                offerNow(context, payload, single);
+                return;
+            case DEBOUNCE:
+                synchronized (this) {
+                    pending = payload;
+                    pendingSingle = single;
+                    deadline = SystemClock.uptimeMillis() + windowMillis;
+                    if (!scheduled) {
+                        scheduled = true;
+                        schedule(windowMillis);
+                    }
+                }
+                return;
+            default:
+                boolean deliverNow = false;
+                synchronized (this) {
+                    long now = SystemClock.uptimeMillis();
+                    if (!scheduled && now - lastDelivery >= windowMillis) {
+                        lastDelivery = now;
+                        deliverNow = true;
+                    } else {
+                        pending = payload;
+                        pendingSingle = single;
+                        if (!scheduled) {
+                            scheduled = true;
+                            schedule(lastDelivery + windowMillis - now);
+                        }
+                    }
+                }
+                if (deliverNow) {
+                    offerNow(context, payload, single);
+                }
+        }
+    }
+
+    /**
+     * Records the delivery just queued for the handler's thread, later events replace its arguments until it starts.
+     */
+    void queued(DeliveryPoster.PendingDelivery delivery) {
+        if (policy == CoalescePolicy.LATEST) {
+            queued = delivery;
+        }
+    }
+
+    /**
+     * Timer callback: delivers the pending payload once it is due.
+     */
+    @Override
+    public void run() {
+        Object payload;
+        boolean single;
+        synchronized (this) {
+            long now = SystemClock.uptimeMillis();
+            if (policy == CoalescePolicy.DEBOUNCE && deadline > now) {
+                schedule(deadline - now);
+                return;
+            }
+            payload = pending;
+            single = pendingSingle;
+            pending = null;
+            scheduled = false;
+            lastDelivery = now;
+        }
+        if (payload != null) {
+            bus.deliverCoalesced(handler, single ? new Object[]{payload} : (Object[]) payload);
+        }
+    }
+
+    private void offerNow(DispatchContext context, Object payload, boolean single) {
+        if (single) {
+            context.offerSingle(handler, payload);
+        } else {
+            context.offer(handler, (Object[]) payload);
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mainHandler().postDelayed(this, delayMillis);
+        } else {
+            TIMER.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static synchronized Handler mainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+}
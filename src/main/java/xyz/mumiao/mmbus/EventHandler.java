@@ -17,6 +17,7 @@
 
 package xyz.mumiao.mmbus;
 
+import java.lang.ref.Reference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -33,16 +34,32 @@ import java.lang.reflect.Method;
  */
 class EventHandler<T> {
 
-  /** Object sporting the handler method. */
-  private final T target;
+  /** Object sporting the handler method, {@code null} once held through {@link #weakTarget}. */
+  private T target;
+  /** Holds the target instead of {@link #target} for weak registrations, set before registering. */
+  private Reference<?> weakTarget;
   /** Handler method. */
   private final Method method;
+  /** Thread the handler method is called on. */
+  private final ThreadMode threadMode;
+  /** Handlers with a higher priority are called first, see {@link Subscribe#priority()}. */
+  private int priority;
+  /** Generated invoker for the handler method, {@code null} to go through reflection. */
+  private final EventInvoker invoker;
+  /** Index of {@link #method} for {@link #invoker}. */
+  private final int methodIndex;
   /** Object hash code. */
   private final int hashCode;
+  /** Merges frequent events when the interface is annotated with {@link Coalesce}, set before registering. */
+  EventCoalescer coalescer;
   /** Should this handler receive events? */
   private boolean valid = true;
 
   EventHandler(T target, Method method) {
+    this(target, method, ThreadMode.POSTING, 0, null, -1);
+  }
+
+  EventHandler(T target, Method method, ThreadMode threadMode, int priority, EventInvoker invoker, int methodIndex) {
     if (target == null) {
       throw new NullPointerException("EventHandler target cannot be null.");
     }
@@ -52,7 +69,13 @@ class EventHandler<T> {
 
     this.target = target;
     this.method = method;
-    method.setAccessible(true);
+    this.threadMode = threadMode;
+    this.priority = priority;
+    this.invoker = invoker;
+    this.methodIndex = methodIndex;
+    if (invoker == null) {
+      method.setAccessible(true);
+    }
 
     // Compute hash code eagerly since we know it will be used frequently and we cannot estimate the runtime of the
     // target's hashCode call.
@@ -60,8 +83,46 @@ class EventHandler<T> {
     hashCode = (prime + method.hashCode()) * prime + target.hashCode();
   }
 
+  /**
+   * Holds the target through {@code reference} from now on, so this handler no longer keeps it alive.
+   */
+  void holdWeakly(Reference<?> reference) {
+    weakTarget = reference;
+    target = null;
+  }
+
+  /**
+   * @return the target, or {@code null} if it was held weakly and has been collected.
+   */
+  @SuppressWarnings("unchecked")
+  T getTarget() {
+    return weakTarget != null ? (T) weakTarget.get() : target;
+  }
+
+  Method getMethod() {
+    return method;
+  }
+
+  public ThreadMode getThreadMode() {
+    return threadMode;
+  }
+
+  public int getPriority() {
+    return priority;
+  }
+
+  /**
+   * Overrides the priority read from {@link Subscribe}, before registering.
+   */
+  void setPriority(int priority) {
+    this.priority = priority;
+  }
+
+  /**
+   * @return false once invalidated, or once a weakly held target has been collected.
+   */
   public boolean isValid() {
-    return valid;
+    return valid && (weakTarget == null || weakTarget.get() != null);
   }
 
   /**
@@ -74,7 +135,9 @@ class EventHandler<T> {
   }
 
   /**
-   * Invokes the wrapped handler method to handle {@code event}.
+   * Invokes the wrapped handler method to handle {@code event}. If the target was held weakly and has been collected,
+   * e.g. after a post took its snapshot of the handlers but before the registration was purged, the handler is
+   * invalidated and the event skipped silently.
    *
    * @param event  event to handle
    * @throws IllegalStateException  if previously invalidated.
@@ -82,9 +145,25 @@ class EventHandler<T> {
    *     an {@link Error} ({@code Error}s are propagated as-is).
    */
   public void handleEvent(Object... event) throws InvocationTargetException {
+    T target = getTarget();
+    if (target == null) {
+      // only a weakly held target can be missing, the constructor rejects null
+      valid = false;
+      return;
+    }
     if (!valid) {
       throw new IllegalStateException(toString() + " has been invalidated and can no longer handle events.");
     }
+    if (invoker != null) {
+      try {
+        invoker.invoke(target, methodIndex, event);
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new InvocationTargetException(e);
+      }
+      return;
+    }
     try {
       method.invoke(target, event);
     } catch (IllegalAccessException e) {
@@ -119,8 +198,9 @@ class EventHandler<T> {
     }
 
     final EventHandler other = (EventHandler) obj;
+    final T target = getTarget();
 
-    return method.equals(other.method) && target == other.target;
+    return target != null && method.equals(other.method) && target == other.getTarget();
   }
 
 }
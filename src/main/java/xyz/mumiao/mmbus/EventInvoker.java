@@ -0,0 +1,18 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Calls the methods of one subscriber interface directly, without {@link java.lang.reflect.Method#invoke}.
+ *
+ * <p>Implementations are generated by {@code mmbus-compiler} for every {@link BusInterface} interface and handed to
+ * the bus through the {@link SubscriberIndex}.
+ */
+public interface EventInvoker {
+
+    /**
+     * @param target      subscriber implementing the interface
+     * @param methodIndex position of the method in {@link SubscriberInfo#getMethods()}
+     * @param args        arguments of the method, primitives boxed
+     * @throws Throwable whatever the subscriber method throws.
+     */
+    void invoke(Object target, int methodIndex, Object[] args) throws Throwable;
+}
@@ -21,6 +21,6 @@ import java.util.Set;
 
 /** Finds producer and subscriber methods. */
 interface HandlerFinder {
-  <T> Map<String, EventHandler<T>>  findAllSubscribers(Class<T> cls, T listener);
-  String keyFromSubscribers(Class<?> keyClass, String methodName, Class<?>... eventClass);
+  <T> Map<HandlerKey, EventHandler<T>>  findAllSubscribers(Class<T> cls, T listener);
+  HandlerKey keyFromSubscribers(Class<?> keyClass, String methodName, Class<?>... eventClass);
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package xyz.mumiao.mmbus;
+
+import java.util.Arrays;
+
+/**
+ * Registry key of a handler: subscriber interface, method name and argument classes.
+ *
+ * <p>The hash code only combines identity hashes of the classes with the (cached) hash of the method name, and is
+ * computed once, so looking a key up never builds or hashes long strings. The non-strict bus keys handlers by their
+ * single argument only and leaves {@link #methodName} empty.
+ *
+ * <p>A probe key, see {@link #HandlerKey()}, is refilled for each lookup so strict posts look up their plan without
+ * allocating; it is never stored.
+ */
+final class HandlerKey {
+
+    Class<?> keyClass;
+    String methodName;
+    Class<?>[] argTypes;
+    private int hashCode;
+
+    HandlerKey(Class<?> keyClass, String methodName, Class<?>... argTypes) {
+        set(keyClass, methodName, argTypes);
+    }
+
+    /**
+     * Creates an empty probe key, to be filled by {@link #set(Class, String, Class[])} before each lookup.
+     */
+    HandlerKey() {
+    }
+
+    /**
+     * Refills a probe key. Keys stored in a map must never be refilled.
+     */
+    void set(Class<?> keyClass, String methodName, Class<?>[] argTypes) {
+        this.keyClass = keyClass;
+        this.methodName = methodName;
+        this.argTypes = argTypes;
+
+        int result = keyClass.hashCode();
+        result = 31 * result + methodName.hashCode();
+        for (Class<?> argType : argTypes) {
+            result = 31 * result + argType.hashCode();
+        }
+        hashCode = result;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HandlerKey)) {
+            return false;
+        }
+        HandlerKey other = (HandlerKey) obj;
+        if (hashCode != other.hashCode || keyClass != other.keyClass || argTypes.length != other.argTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < argTypes.length; i++) {
+            if (argTypes[i] != other.argTypes[i]) {
+                return false;
+            }
+        }
+        return methodName.equals(other.methodName);
+    }
+
+    @Override
+    public String toString() {
+        return keyClass.getName() + "-" + methodName + Arrays.toString(argTypes);
+    }
+}
@@ -0,0 +1,142 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Builds handlers from the compile-time {@link SubscriberIndex} instead of scanning the interface with
+ * {@link Class#getDeclaredMethods()}. Interfaces that no installed index knows are handed to {@code fallback}.
+ */
+class IndexedHandlerFinder implements HandlerFinder {
+
+    /**
+     * Indexes installed through {@link MMBus#addSubscriberIndex(SubscriberIndex)}, shared by every bus.
+     */
+    static final List<SubscriberIndex> SUBSCRIBER_INDEXES = new CopyOnWriteArrayList<SubscriberIndex>();
+
+    /**
+     * Methods resolved from the index, one lookup per indexed method and interface.
+     */
+    private final ConcurrentMap<Class<?>, IndexedMethods> METHODS_CACHE = new ConcurrentHashMap<Class<?>, IndexedMethods>();
+
+    final HandlerFinder fallback;
+
+    private final boolean isStrictMode;
+
+    IndexedHandlerFinder(HandlerFinder fallback) {
+        this.fallback = fallback;
+        this.isStrictMode = fallback instanceof StrictHandlerFindler;
+    }
+
+    @Override
+    public <T> Map<HandlerKey, EventHandler<T>> findAllSubscribers(Class<T> cls, T listener) {
+        IndexedMethods indexed = METHODS_CACHE.get(cls);
+        if (indexed == null) {
+            SubscriberInfo info = findSubscriberInfo(cls);
+            if (info == null) {
+                return fallback.findAllSubscribers(cls, listener);
+            }
+            indexed = new IndexedMethods(loadIndexedMethods(info), threadModes(info), priorities(info), info.getInvoker());
+            METHODS_CACHE.put(cls, indexed);
+        }
+
+        Map<HandlerKey, EventHandler<T>> handlersInMethod = new HashMap<HandlerKey, EventHandler<T>>();
+        Method[] methods = indexed.methods;
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            HandlerKey key = fallback.keyFromSubscribers(cls, method.getName(), method.getParameterTypes());
+            handlersInMethod.put(key, new EventHandler<T>(listener, method, indexed.threadModes[i],
+                    indexed.priorities[i], indexed.invoker, i));
+        }
+        return handlersInMethod;
+    }
+
+    @Override
+    public HandlerKey keyFromSubscribers(Class<?> keyClass, String methodName, Class<?>... eventClass) {
+        return fallback.keyFromSubscribers(keyClass, methodName, eventClass);
+    }
+
+    private static SubscriberInfo findSubscriberInfo(Class<?> cls) {
+        for (SubscriberIndex index : SUBSCRIBER_INDEXES) {
+            SubscriberInfo info = index.getSubscriberInfo(cls);
+            if (info != null) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up each indexed method directly by name and parameter types. The index was validated at compile time,
+     * only the rules of the non-strict bus that depend on how the interface is used are checked again here.
+     */
+    private Method[] loadIndexedMethods(SubscriberInfo info) {
+        Class<?> keyClass = info.getKeyClass();
+        SubscriberMethod[] subscriberMethods = info.getMethods();
+        Method[] methods = new Method[subscriberMethods.length];
+        Set<Class<?>> eventTypes = new HashSet<Class<?>>();
+        for (int i = 0; i < subscriberMethods.length; i++) {
+            SubscriberMethod subscriberMethod = subscriberMethods[i];
+            Class<?>[] parameterTypes = subscriberMethod.getParameterTypes();
+            if (!isStrictMode) {
+                if (parameterTypes.length != 1) {
+                    throw new IllegalArgumentException("Method " + subscriberMethod.getMethodName() + " of " + keyClass
+                            + " requires " + parameterTypes.length + " arguments.  Methods must require a single argument.");
+                }
+                if (!eventTypes.add(parameterTypes[0])) {
+                    throw new IllegalArgumentException("Method " + subscriberMethod.getMethodName() + " of " + keyClass
+                            + " has parameterType " + parameterTypes[0] + " but has already exist.");
+                }
+            }
+            try {
+                methods[i] = keyClass.getMethod(subscriberMethod.getMethodName(), parameterTypes);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Subscriber index is out of date for " + keyClass + ", rebuild it.", e);
+            }
+        }
+        return methods;
+    }
+
+    private static ThreadMode[] threadModes(SubscriberInfo info) {
+        SubscriberMethod[] subscriberMethods = info.getMethods();
+        ThreadMode[] threadModes = new ThreadMode[subscriberMethods.length];
+        for (int i = 0; i < subscriberMethods.length; i++) {
+            threadModes[i] = subscriberMethods[i].getThreadMode();
+        }
+        return threadModes;
+    }
+
+    private static int[] priorities(SubscriberInfo info) {
+        SubscriberMethod[] subscriberMethods = info.getMethods();
+        int[] priorities = new int[subscriberMethods.length];
+        for (int i = 0; i < subscriberMethods.length; i++) {
+            priorities[i] = subscriberMethods[i].getPriority();
+        }
+        return priorities;
+    }
+
+    /**
+     * Resolved methods of an indexed interface together with their thread modes, priorities and its generated invoker,
+     * if any.
+     */
+    static class IndexedMethods {
+        final Method[] methods;
+        final ThreadMode[] threadModes;
+        final int[] priorities;
+        final EventInvoker invoker;
+
+        IndexedMethods(Method[] methods, ThreadMode[] threadModes, int[] priorities, EventInvoker invoker) {
+            this.methods = methods;
+            this.threadModes = threadModes;
+            this.priorities = priorities;
+            this.invoker = invoker;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package xyz.mumiao.mmbus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Bucket {@code i} counts durations below {@code 2^i} ns and at
+ * least {@code 2^(i-1)} ns, so percentiles are exact to a factor of two; the count, total and maximum are exact.
+ */
+final class LatencyHistogram {
+
+    /** 2^40 ns is about 18 minutes, longer durations go to the last bucket. */
+    static final int BUCKETS = 41;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos)));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // retry with the maximum another thread just recorded
+        }
+    }
+
+    BusMetrics.LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return new BusMetrics.LatencySnapshot(count.get(), totalNanos.get(), maxNanos.get(),
+                percentile(counts, total, 0.5), percentile(counts, total, 0.9), percentile(counts, total, 0.99));
+    }
+
+    /**
+     * Upper bound of the bucket holding the {@code fraction} quantile.
+     */
+    private static long percentile(long[] counts, long total, double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == 0 ? 0 : 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+}
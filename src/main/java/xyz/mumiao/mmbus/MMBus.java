@@ -1,19 +1,24 @@
 package xyz.mumiao.mmbus;
 
+import android.os.Looper;
 import android.util.Log;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 import xyz.mumiao.mmservicecenter.MMService;
 
@@ -27,7 +32,7 @@ public class MMBus extends MMService {
 
     public static MMBus getStrictBus() {
         if (strictBus == null) {
-            strictBus = new MMBus(ThreadEnforcer.MAIN, "StrictBus", new StrictHandlerFindler());
+            strictBus = new MMBus(ThreadEnforcer.MAIN, "StrictBus", new IndexedHandlerFinder(new StrictHandlerFindler()));
         }
         return strictBus;
     }
@@ -35,9 +40,74 @@ public class MMBus extends MMService {
     public static final String DEFAULT_IDENTIFIER = "DefaultBus";
 
     /**
-     * All registered event handlers, indexed by event type.
+     * Installs a subscriber index generated by {@code mmbus-compiler}. Interfaces found in an installed index are
+     * registered without reflective scanning, all others keep using the runtime finders. Call it once, before the
+     * first register, usually in {@code Application.onCreate}.
      */
-    private final ConcurrentMap<String, Set<EventHandler>> handlersByType = new ConcurrentHashMap<String, Set<EventHandler>>();
+    public static void addSubscriberIndex(SubscriberIndex index) {
+        if (index == null) {
+            throw new NullPointerException("SubscriberIndex must not be null.");
+        }
+        IndexedHandlerFinder.SUBSCRIBER_INDEXES.add(index);
+    }
+
+    /**
+     * All registered event handlers, indexed by event type. Each array is sorted by descending priority, never
+     * modified, and replaced as a whole under {@link #registryLock}. Plans are resolved under the same lock, so a
+     * register or unregister of several keys is seen all at once.
+     */
+    private final ConcurrentMap<HandlerKey, EventHandler[]> handlersByType = new ConcurrentHashMap<HandlerKey, EventHandler[]>();
+
+    private final Object registryLock = new Object();
+
+    /**
+     * Dispatch plans of non-strict posts and the plan generation, by subscriber interface.
+     */
+    private final ConcurrentMap<Class<?>, InterfacePlans> dispatchPlans = new ConcurrentHashMap<Class<?>, InterfacePlans>();
+
+    /**
+     * Most strict signatures ever cached, see {@link #strictDispatchPlanCache}.
+     */
+    static final int MAX_STRICT_SIGNATURES = 512;
+
+    /**
+     * Dead signatures kept with their counts; a signature evicted past this is counted and reported afresh.
+     */
+    static final int MAX_DEAD_EVENTS = 256;
+
+    /**
+     * Dispatch plans of strict posts, by the concrete signature of the post (interface, method name and runtime
+     * argument classes). Keyed by content, so every post with the same signature hits the same entry.
+     */
+    final BoundedCache<HandlerKey, DispatchPlan> strictDispatchPlanCache =
+            new BoundedCache<HandlerKey, DispatchPlan>(MAX_STRICT_SIGNATURES);
+
+    /**
+     * {@link Coalesce} of each registered interface, {@link #NO_COALESCE} when it has none.
+     */
+    private final ConcurrentMap<Class<?>, Object> coalesceByInterface = new ConcurrentHashMap<Class<?>, Object>();
+
+    private static final Object NO_COALESCE = new Object();
+
+    /**
+     * Sticky posts kept for replay on register, by subscriber interface.
+     */
+    private final ConcurrentMap<Class<?>, StickyEvents> stickyEvents = new ConcurrentHashMap<Class<?>, StickyEvents>();
+
+    /**
+     * Subscribers of {@link #registerWeak(Class, Object)} that were collected, their registrations are removed on the
+     * next post.
+     */
+    private final ReferenceQueue<Object> collectedSubscribers = new ReferenceQueue<Object>();
+
+    /**
+     * Signatures posted without reaching any handler, see {@link DeadEvent}. Bounded, as strict posts may carry any
+     * argument classes.
+     */
+    private final BoundedCache<HandlerKey, DeadEvent> deadEvents =
+            new BoundedCache<HandlerKey, DeadEvent>(MAX_DEAD_EVENTS);
+
+    private volatile DeadEvent.Listener deadEventListener;
 
     /**
      * Identifier used to differentiate the event bus instance.
@@ -55,23 +125,35 @@ public class MMBus extends MMService {
     private final HandlerFinder handlerFinder;
 
     /**
-     * Queues of events for the current thread to dispatch.
+     * Posters handing deliveries to {@link ThreadMode#MAIN}, {@link ThreadMode#BACKGROUND} and {@link ThreadMode#ASYNC}
+     * handlers over to their threads.
      */
-    private final ThreadLocal<ConcurrentLinkedQueue<EventWithHandler>> eventsToDispatch =
-            new ThreadLocal<ConcurrentLinkedQueue<EventWithHandler>>() {
-                @Override
-                protected ConcurrentLinkedQueue<EventWithHandler> initialValue() {
-                    return new ConcurrentLinkedQueue<EventWithHandler>();
-                }
-            };
+    final MainThreadPoster mainThreadPoster;
+    private final BackgroundPoster backgroundPoster;
+    private final AsyncPoster asyncPoster;
+
+    /**
+     * Posts from {@link #postFromAnyThread} waiting for the main looper.
+     */
+    final CrossThreadPostQueue crossThreadPosts;
+
+    /**
+     * Proxies returned by {@link #publisher(Class)}, by subscriber interface.
+     */
+    private final ConcurrentMap<Class<?>, Object> publishers = new ConcurrentHashMap<Class<?>, Object>();
+
+    /**
+     * Instrumentation installed with {@link #setMetrics(BusMetrics)}, {@code null} when disabled.
+     */
+    private volatile BusMetrics metrics;
 
     /**
-     * True if the current thread is currently dispatching an event.
+     * Queue of events for the current thread to dispatch, and whether the current thread is dispatching.
      */
-    private final ThreadLocal<Boolean> isDispatching = new ThreadLocal<Boolean>() {
+    private final ThreadLocal<DispatchContext> dispatchContext = new ThreadLocal<DispatchContext>() {
         @Override
-        protected Boolean initialValue() {
-            return false;
+        protected DispatchContext initialValue() {
+            return new DispatchContext();
         }
     };
 
@@ -89,14 +171,20 @@ public class MMBus extends MMService {
     }
 
     public MMBus(ThreadEnforcer enforcer, String identifier) {
-        this(enforcer, identifier, new DefaultHandlerFinder());
+        this(enforcer, identifier, new IndexedHandlerFinder(new DefaultHandlerFinder()));
     }
 
     public MMBus(ThreadEnforcer enforcer, String identifier, HandlerFinder handlerFinder) {
         this.enforcer = enforcer;
         this.identifier = identifier;
         this.handlerFinder = handlerFinder;
-        isStrictMode = handlerFinder instanceof StrictHandlerFindler;
+        mainThreadPoster = new MainThreadPoster(this);
+        backgroundPoster = new BackgroundPoster(this);
+        asyncPoster = new AsyncPoster(this);
+        crossThreadPosts = new CrossThreadPostQueue(this);
+        HandlerFinder finder = handlerFinder instanceof IndexedHandlerFinder
+                ? ((IndexedHandlerFinder) handlerFinder).fallback : handlerFinder;
+        isStrictMode = finder instanceof StrictHandlerFindler;
     }
 
     @Override
@@ -107,8 +195,44 @@ public class MMBus extends MMService {
     /**
      * @param keyClass 目标接口
      * @param object   接口对应的实现，具体的要注册的，一个类可以注册和反注册多个接口
+     * @return 本次注册的句柄，可用 {@link Registration#unregister()} 反注册而不用重新扫描 {@code object}
+     */
+    public <T> Registration register(Class<T> keyClass, T object) {
+        return register(keyClass, object, false, null);
+    }
+
+    /**
+     * Registers {@code object} like {@link #register(Class, Object)}, with {@code priority} instead of the
+     * {@link Subscribe#priority()} of its methods.
      */
-    public <T> void register(Class<T> keyClass, T object) {
+    public <T> Registration register(Class<T> keyClass, T object, int priority) {
+        return register(keyClass, object, false, priority);
+    }
+
+    /**
+     * Registers {@code object} like {@link #register(Class, Object)}, but the bus only keeps a weak reference to it:
+     * once it is garbage collected, its handlers are removed during a later post, so forgetting to unregister no
+     * longer leaks it. The caller must keep {@code object} reachable for as long as it should receive events.
+     *
+     * @param keyClass 目标接口
+     * @param object   接口对应的实现，MMBus不持有其强引用
+     */
+    public <T> Registration registerWeak(Class<T> keyClass, T object) {
+        return register(keyClass, object, true, null);
+    }
+
+    /**
+     * Registers {@code object} like {@link #registerWeak(Class, Object)}, with {@code priority} instead of the
+     * {@link Subscribe#priority()} of its methods.
+     */
+    public <T> Registration registerWeak(Class<T> keyClass, T object, int priority) {
+        return register(keyClass, object, true, priority);
+    }
+
+    /**
+     * @param priority overrides the priority of every handler of {@code object}, {@code null} to keep their own.
+     */
+    private <T> Registration register(Class<T> keyClass, T object, boolean weak, Integer priority) {
 
         if (!keyClass.isInterface())
             throw new IllegalStateException("register keyClass must be a interface");
@@ -117,21 +241,119 @@ public class MMBus extends MMService {
             throw new NullPointerException("Object to register must not be null.");
         }
         enforcer.enforce(this);
+        purgeCollectedSubscribers();
+
+        return registerChecked(new Class<?>[]{keyClass}, object, weak, priority);
+    }
+
+    /**
+     * Registers {@code object} for each of {@code interfaces} at once: the handlers of every interface are found first
+     * and then published together, so no post sees only part of them.
+     *
+     * @param object     实现了 {@code interfaces} 的对象
+     * @param interfaces 需要注册的接口
+     * @return 覆盖所有接口的注册句柄
+     */
+    public Registration registerAll(Object object, Class<?>... interfaces) {
+        checkInterfaces(object, interfaces, "register");
+        enforcer.enforce(this);
+        purgeCollectedSubscribers();
+
+        return registerChecked(interfaces, object, false, null);
+    }
+
+    /**
+     * Unregisters {@code object} from each of {@code interfaces} at once. Nothing is removed if it is not registered
+     * for one of them.
+     *
+     * @param object     实现了 {@code interfaces} 的对象
+     * @param interfaces 需要反注册的接口
+     */
+    public void unregisterAll(Object object, Class<?>... interfaces) {
+        checkInterfaces(object, interfaces, "unregister");
+        enforcer.enforce(this);
+
+        unregisterChecked(interfaces, object);
+    }
+
+    private static void checkInterfaces(Object object, Class<?>[] interfaces, String action) {
+        if (object == null) {
+            throw new NullPointerException("Object to " + action + " must not be null.");
+        }
+        if (interfaces == null) {
+            throw new NullPointerException("Interfaces to " + action + " must not be null.");
+        }
+        for (Class<?> keyClass : interfaces) {
+            if (!keyClass.isInterface())
+                throw new IllegalStateException(action + " keyClass must be a interface");
+            if (!keyClass.isInstance(object)) {
+                throw new IllegalArgumentException(object.getClass() + " does not implement " + keyClass);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Registration registerChecked(Class<?>[] keyClasses, Object object, boolean weak, Integer priority) {
+        WeakSubscriber weakSubscriber = weak ? new WeakSubscriber(object, collectedSubscribers) : null;
+        List<HandlerKey> keys = new ArrayList<HandlerKey>();
+        List<EventHandler> handlers = new ArrayList<EventHandler>();
+        for (Class<?> keyClass : keyClasses) {
+            Map<HandlerKey, EventHandler<Object>> foundHandlersMap = handlerFinder.findAllSubscribers((Class<Object>) keyClass, object);
+            Coalesce coalesce = coalesceOf(keyClass);
+            for (Map.Entry<HandlerKey, EventHandler<Object>> entry : foundHandlersMap.entrySet()) {
+                EventHandler<Object> handler = entry.getValue();
+                if (coalesce != null) {
+                    handler.coalescer = new EventCoalescer(this, handler, coalesce);
+                }
+                if (weakSubscriber != null) {
+                    handler.holdWeakly(weakSubscriber);
+                }
+                if (priority != null) {
+                    handler.setPriority(priority);
+                }
+                keys.add(entry.getKey());
+                handlers.add(handler);
+            }
+        }
 
-        Map<String, EventHandler<T>> foundHandlersMap = handlerFinder.findAllSubscribers(keyClass, object);
-        for (String type : foundHandlersMap.keySet()) {
-            Set<EventHandler> handlers = handlersByType.get(type);
-            if (handlers == null) {
-                //concurrent put if absent
-                Set<EventHandler> handlersCreation = new CopyOnWriteArraySet<EventHandler>();
-                handlers = handlersByType.putIfAbsent(type, handlersCreation);
-                if (handlers == null) {
-                    handlers = handlersCreation;
+        List<HandlerKey> addedKeys = new ArrayList<HandlerKey>(keys.size());
+        List<EventHandler> addedHandlers = new ArrayList<EventHandler>(handlers.size());
+        synchronized (registryLock) {
+            for (int i = 0; i < keys.size(); i++) {
+                // a handler already registered for this object stays owned by its first registration
+                if (addHandler(keys.get(i), handlers.get(i))) {
+                    addedKeys.add(keys.get(i));
+                    addedHandlers.add(handlers.get(i));
                 }
             }
-            final EventHandler<T> foundHandlers = foundHandlersMap.get(type);
-            handlers.add(foundHandlers);
+            // bumped before the lock is released, so no plan built from the new handlers gets the old generation
+            for (Class<?> keyClass : keyClasses) {
+                interfacePlans(keyClass).invalidate();
+            }
+        }
+
+        Registration registration = new Registration(this,
+                addedKeys.toArray(new HandlerKey[addedKeys.size()]),
+                addedHandlers.toArray(new EventHandler[addedHandlers.size()]));
+        if (weakSubscriber != null) {
+            weakSubscriber.registration = registration;
         }
+
+        Map<HandlerKey, EventHandler> replayTo = null;
+        for (Class<?> keyClass : keyClasses) {
+            StickyEvents sticky = stickyEvents.get(keyClass);
+            if (sticky != null) {
+                if (replayTo == null) {
+                    // only the handlers this call added, the others already received the sticky events
+                    replayTo = new HashMap<HandlerKey, EventHandler>(addedKeys.size() * 2);
+                    for (int i = 0; i < addedKeys.size(); i++) {
+                        replayTo.put(addedKeys.get(i), addedHandlers.get(i));
+                    }
+                }
+                replayStickyEvents(keyClass, sticky, replayTo);
+            }
+        }
+        return registration;
     }
 
     /**
@@ -148,18 +370,144 @@ public class MMBus extends MMService {
         }
         enforcer.enforce(this);
 
-        Map<String, EventHandler<T>> handlersInListener = handlerFinder.findAllSubscribers(keyClass, object);
+        unregisterChecked(new Class<?>[]{keyClass}, object);
+    }
 
-        for (String key : handlersInListener.keySet()) {
-            Set<EventHandler> currentHandlers = getHandlersForEventType(key);
+    @SuppressWarnings("unchecked")
+    private void unregisterChecked(Class<?>[] keyClasses, Object object) {
+        List<HandlerKey> keys = new ArrayList<HandlerKey>();
+        List<EventHandler> registeredHandlers = new ArrayList<EventHandler>();
+        for (Class<?> keyClass : keyClasses) {
+            Map<HandlerKey, EventHandler<Object>> handlersInListener = handlerFinder.findAllSubscribers((Class<Object>) keyClass, object);
+
+            for (Map.Entry<HandlerKey, EventHandler<Object>> entry : handlersInListener.entrySet()) {
+                EventHandler[] currentHandlers = getHandlersForEventType(entry.getKey());
+
+                EventHandler<Object> eventMethodsInListener = entry.getValue();
+                EventHandler registered = null;
+                if (currentHandlers != null) {
+                    for (int i = 0; i < currentHandlers.length; i++) {
+                        if (eventMethodsInListener.equals(currentHandlers[i])) {
+                            registered = currentHandlers[i];
+                            break;
+                        }
+                    }
+                }
 
-            EventHandler<T> eventMethodsInListener = handlersInListener.get(key);
+                if (registered == null) {
+                    throw new IllegalArgumentException("Missing event handler for an annotated method. Is " + object.getClass() + " registered?");
+                }
+                keys.add(entry.getKey());
+                registeredHandlers.add(registered);
+            }
+        }
 
-            if (currentHandlers == null || !currentHandlers.contains(eventMethodsInListener)) {
-                throw new IllegalArgumentException("Missing event handler for an annotated method. Is " + object.getClass() + " registered?");
+        synchronized (registryLock) {
+            for (int i = 0; i < keys.size(); i++) {
+                // invalidate the registered instance, so deliveries already queued for it are dropped
+                registeredHandlers.get(i).invalidate();
+                removeHandler(keys.get(i), registeredHandlers.get(i));
+            }
+            for (Class<?> keyClass : keyClasses) {
+                interfacePlans(keyClass).invalidate();
+            }
+        }
+    }
+
+    /**
+     * Removes the handlers added by {@code registration}, see {@link Registration#unregister()}.
+     */
+    void unregister(Registration registration) {
+        enforcer.enforce(this);
+        removeRegistration(registration);
+    }
+
+    private void removeRegistration(Registration registration) {
+        if (!registration.markUnregistered()) {
+            return;
+        }
+        HandlerKey[] keys = registration.keys;
+        EventHandler[] handlers = registration.handlers;
+        synchronized (registryLock) {
+            for (int i = 0; i < handlers.length; i++) {
+                handlers[i].invalidate();
+                removeHandler(keys[i], handlers[i]);
+            }
+            Class<?> lastKeyClass = null;
+            for (HandlerKey key : keys) {
+                // keys of one interface are adjacent
+                if (key.keyClass != lastKeyClass) {
+                    lastKeyClass = key.keyClass;
+                    interfacePlans(lastKeyClass).invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes a copy of the handlers of {@code key} with {@code handler} inserted after every handler of the same or
+     * a higher priority. Called with {@link #registryLock} held.
+     *
+     * @return false if an equal handler is already registered.
+     */
+    private boolean addHandler(HandlerKey key, EventHandler handler) {
+        EventHandler[] current = handlersByType.get(key);
+        if (current == null) {
+            current = DispatchPlan.NO_HANDLERS;
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(handler)) {
+                return false;
+            }
+        }
+        int index = current.length;
+        while (index > 0 && current[index - 1].getPriority() < handler.getPriority()) {
+            index--;
+        }
+        EventHandler[] updated = new EventHandler[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        updated[index] = handler;
+        System.arraycopy(current, index, updated, index + 1, current.length - index);
+        handlersByType.put(key, updated);
+        return true;
+    }
+
+    /**
+     * Publishes a copy of the handlers of {@code key} without {@code handler}, compared by identity. Called with
+     * {@link #registryLock} held.
+     */
+    private void removeHandler(HandlerKey key, EventHandler handler) {
+        EventHandler[] current = handlersByType.get(key);
+        if (current == null) {
+            return;
+        }
+        int index = 0;
+        while (index < current.length && current[index] != handler) {
+            index++;
+        }
+        if (index == current.length) {
+            return;
+        }
+        if (current.length == 1) {
+            handlersByType.remove(key);
+            return;
+        }
+        EventHandler[] updated = new EventHandler[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, updated.length - index);
+        handlersByType.put(key, updated);
+    }
+
+    /**
+     * Removes the registrations of weakly registered subscribers that were collected. Costs one volatile read when
+     * there are none.
+     */
+    private void purgeCollectedSubscribers() {
+        WeakSubscriber collected;
+        while ((collected = (WeakSubscriber) collectedSubscribers.poll()) != null) {
+            if (collected.registration != null) {
+                removeRegistration(collected.registration);
             }
-            eventMethodsInListener.invalidate();
-            currentHandlers.remove(eventMethodsInListener);
         }
     }
 
@@ -174,20 +522,32 @@ public class MMBus extends MMService {
         enforcer.enforce(this);
         if (isStrictMode)
             throw new IllegalStateException("when isStrictMode is true, post must contain targeMethodName");
+        purgeCollectedSubscribers();
 
+        DispatchContext context = dispatchContext.get();
+        enqueuePost(context, keyClass, event);
+        dispatchQueuedEvents(context);
+    }
 
-        Set<Class<?>> dispatchTypes = flattenHierarchy(event.getClass());
-
-        for (Class<?> eventType : dispatchTypes) {
-            Set<EventHandler> wrappers = getHandlersForEventType(handlerFinder.keyFromSubscribers(keyClass, "", eventType));
+    /**
+     * Queues the deliveries of a non-strict post of {@code event} without draining the queue.
+     */
+    private void enqueuePost(DispatchContext context, Class<?> keyClass, Object event) {
+        DispatchPlan plan = dispatchPlanFor(keyClass, event.getClass());
+        BusMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordPost(keyClass, event.getClass());
+        }
+        if (plan.deadEvent != null) {
+            reportDeadEvent(plan.deadEvent);
+            return;
+        }
 
-            if (wrappers != null && !wrappers.isEmpty()) {
-                for (EventHandler wrapper : wrappers) {
-                    enqueueEvent(wrapper, event);
-                }
-            }
+        EventHandler[] handlers = plan.handlers;
+        context.beginPost();
+        for (int i = 0; i < handlers.length; i++) {
+            enqueueSingle(context, handlers[i], event);
         }
-        dispatchQueuedEvents();
     }
 
     /**
@@ -206,38 +566,367 @@ public class MMBus extends MMService {
         enforcer.enforce(this);
         if (!isStrictMode)
             throw new IllegalStateException("when isStrictMode is false, post cannot contain targeMethodName");
+        purgeCollectedSubscribers();
+
+        DispatchContext context = dispatchContext.get();
+        enqueueStrictPost(context, keyClass, targeMethodName, args);
+        dispatchQueuedEvents(context);
+    }
 
+    /**
+     * Queues the deliveries of a strict post of {@code args} without draining the queue.
+     */
+    private void enqueueStrictPost(DispatchContext context, Class<?> keyClass, String targeMethodName, Object[] args) {
         //20150702完成TODO 和上面的post相比，这个却别在于要严格要求传入参数的类型，不能为子类传输，否则报错，这里以后可以做优化
-        Class<?> curClassArray[] = getMethodParameterTypes(args);
-        Set<Class<?>[]> allClassArry = flattenHierarchy(curClassArray);
-
-        for (Class<?>[] array : allClassArry)
-        {
-            Set<EventHandler> wrappers = getHandlersForEventType(handlerFinder.keyFromSubscribers(keyClass, targeMethodName, array));
-            if (wrappers != null && !wrappers.isEmpty()) {
-                for (EventHandler wrapper : wrappers) {
-                    enqueueEvent(wrapper, args);
-                }
-            } else {
-                if (isDebugMode)
-                {
-                    StringBuilder methodParaStr = new StringBuilder();
-                    for (Class<?> cls : getMethodParameterTypes(args)) {
-                        methodParaStr.append(" ").append(cls.getName());
-                    }
+        DispatchPlan plan = strictDispatchPlanFor(context.strictSignature(keyClass, targeMethodName, args));
+        BusMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordPost(keyClass, targeMethodName);
+        }
+        if (plan.deadEvent != null) {
+            reportDeadEvent(plan.deadEvent);
+            return;
+        }
 
-                    try {
-                        keyClass.getMethod(targeMethodName, getMethodParameterTypes(args));
-                    }
-                    catch (NoSuchMethodException e)
-                    {
-                        Log.e("MMBus", "post方法名错误或者传参错误：keyClass=" + keyClass.getName() + ",targeMethodName=" + targeMethodName + ",args=" + methodParaStr.toString(), e);
-                    }
+        EventHandler[] handlers = plan.handlers;
+        context.beginPost();
+        for (int i = 0; i < handlers.length; i++) {
+            enqueue(context, handlers[i], args);
+        }
+    }
+
+    /**
+     * Same as {@link #post(Class, Object)}, but may be called from any thread: the event is dispatched on the main
+     * looper, in the order it was posted. Posts from worker threads go through a lock-free queue and are dispatched in
+     * batches, one looper message per batch; called on the main thread it posts directly.
+     *
+     * @param keyClass 接口类名
+     * @param event    event to post.
+     * @throws NullPointerException if the event is null.
+     */
+    public void postFromAnyThread(Class<?> keyClass, Object event) {
+        if (!keyClass.isInterface())
+            throw new IllegalStateException("post keyClass must be a interface");
+
+        if (event == null) {
+            throw new NullPointerException("Event to post must not be null.");
+        }
+
+        if (isStrictMode)
+            throw new IllegalStateException("when isStrictMode is true, post must contain targeMethodName");
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            post(keyClass, event);
+        } else {
+            crossThreadPosts.offer(new CrossThreadPostQueue.PendingPost(keyClass, null, event, null));
+        }
+    }
+
+    /**
+     * Same as {@link #post(Class, String, Object...)}, but may be called from any thread, see
+     * {@link #postFromAnyThread(Class, Object)}. {@code args} is kept as-is until the post is dispatched.
+     *
+     * @param keyClass        接口类名
+     * @param targeMethodName 方法名
+     * @param args            方法参数
+     */
+    public void postFromAnyThread(Class<?> keyClass, String targeMethodName, Object... args) {
+        if (!keyClass.isInterface())
+            throw new IllegalStateException("post keyClass must be a interface");
+
+        if (args == null) {
+            throw new NullPointerException("Event to post must not be null.");
+        }
+
+        if (!isStrictMode)
+            throw new IllegalStateException("when isStrictMode is false, post cannot contain targeMethodName");
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            post(keyClass, targeMethodName, args);
+        } else {
+            crossThreadPosts.offer(new CrossThreadPostQueue.PendingPost(keyClass, targeMethodName, null, args));
+        }
+    }
+
+    /**
+     * Queues the deliveries of a post taken off the {@link CrossThreadPostQueue} on the main looper, leaving the drain
+     * to the end of its batch.
+     */
+    void enqueueCrossThreadPost(CrossThreadPostQueue.PendingPost post) {
+        purgeCollectedSubscribers();
+        DispatchContext context = dispatchContext.get();
+        if (post.methodName == null) {
+            enqueuePost(context, post.keyClass, post.event());
+        } else {
+            enqueueStrictPost(context, post.keyClass, post.methodName, post.args());
+        }
+    }
+
+    /**
+     * Posts every event of {@code events} to {@code keyClass} in iteration order, and drains the queue once at the end.
+     * Each handler sees the events in the same order as with one {@link #post(Class, Object)} per event.
+     *
+     * @param keyClass 目标接口
+     * @param events   需要依次发送的消息
+     */
+    public void postAll(Class<?> keyClass, Collection<?> events) {
+        if (!keyClass.isInterface())
+            throw new IllegalStateException("post keyClass must be a interface");
+
+        if (events == null) {
+            throw new NullPointerException("Events to post must not be null.");
+        }
+
+        enforcer.enforce(this);
+        if (isStrictMode)
+            throw new IllegalStateException("when isStrictMode is true, post must contain targeMethodName");
+        purgeCollectedSubscribers();
+
+        BusMetrics metrics = this.metrics;
+        DispatchContext context = dispatchContext.get();
+        Class<?> lastEventClass = null;
+        DispatchPlan plan = null;
+        for (Object event : events) {
+            if (event == null) {
+                throw new NullPointerException("Event to post must not be null.");
+            }
+            // feeds usually repeat one event class, keep its plan instead of looking it up again
+            if (event.getClass() != lastEventClass) {
+                lastEventClass = event.getClass();
+                plan = dispatchPlanFor(keyClass, lastEventClass);
+            }
+            if (metrics != null) {
+                metrics.recordPost(keyClass, lastEventClass);
+            }
+            if (plan.deadEvent != null) {
+                reportDeadEvent(plan.deadEvent);
+                continue;
+            }
+            EventHandler[] handlers = plan.handlers;
+            context.beginPost();
+            for (int i = 0; i < handlers.length; i++) {
+                enqueueSingle(context, handlers[i], event);
+            }
+        }
+        dispatchQueuedEvents(context);
+    }
+
+    /**
+     * Strict counterpart of {@link #postAll(Class, Collection)}: posts {@code targeMethodName} once per argument list
+     * of {@code argsList}, and drains the queue once at the end.
+     *
+     * @param keyClass        需要发送给消息的接口
+     * @param targeMethodName 该接口对应的方法名称
+     * @param argsList        每次调用传入该方法对应的参数值
+     */
+    public void postAll(Class<?> keyClass, String targeMethodName, Collection<Object[]> argsList) {
+        if (!keyClass.isInterface())
+            throw new IllegalStateException("post keyClass must be a interface");
+
+        if (argsList == null) {
+            throw new NullPointerException("Events to post must not be null.");
+        }
+
+        enforcer.enforce(this);
+        if (!isStrictMode)
+            throw new IllegalStateException("when isStrictMode is false, post cannot contain targeMethodName");
+        purgeCollectedSubscribers();
+
+        BusMetrics metrics = this.metrics;
+        DispatchContext context = dispatchContext.get();
+        for (Object[] args : argsList) {
+            if (args == null) {
+                throw new NullPointerException("Event to post must not be null.");
+            }
+            DispatchPlan plan = strictDispatchPlanFor(context.strictSignature(keyClass, targeMethodName, args));
+            if (metrics != null) {
+                metrics.recordPost(keyClass, targeMethodName);
+            }
+            if (plan.deadEvent != null) {
+                reportDeadEvent(plan.deadEvent);
+                continue;
+            }
+            EventHandler[] handlers = plan.handlers;
+            context.beginPost();
+            for (int i = 0; i < handlers.length; i++) {
+                enqueue(context, handlers[i], args);
+            }
+        }
+        dispatchQueuedEvents(context);
+    }
+
+    /**
+     * Returns a {@code keyClass} whose method calls post to the handlers of the same method, e.g.
+     * {@code bus.publisher(Listener.class).onLogin(user)} instead of {@code bus.post(Listener.class, "onLogin", user)}.
+     * The method and its handlers are known at compile time, so no name or argument class is looked up per call;
+     * unlike a strict {@code post}, handlers of other overloads are not called. Works on strict and non-strict buses.
+     *
+     * @param keyClass 目标接口，方法的返回值必须为void，且不能有继承自父接口的方法：handler只按接口自身声明的方法注册
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T publisher(Class<T> keyClass) {
+        Object publisher = publishers.get(keyClass);
+        if (publisher == null) {
+            if (!keyClass.isInterface())
+                throw new IllegalStateException("publisher keyClass must be a interface");
+            for (Method method : keyClass.getMethods()) {
+                if (method.getReturnType() != void.class) {
+                    throw new IllegalArgumentException("Method " + method + " must return void to be published.");
                 }
+                if (method.getDeclaringClass() != keyClass) {
+                    throw new IllegalArgumentException("Method " + method + " is inherited by " + keyClass.getName()
+                            + ", its handlers are not registered under it; publish it through "
+                            + method.getDeclaringClass().getName() + ".");
+                }
+            }
+            Object publisherCreation = Proxy.newProxyInstance(keyClass.getClassLoader(), new Class<?>[]{keyClass},
+                    new Publisher(this, keyClass));
+            publisher = publishers.putIfAbsent(keyClass, publisherCreation);
+            if (publisher == null) {
+                publisher = publisherCreation;
             }
         }
+        return (T) publisher;
+    }
 
-        dispatchQueuedEvents();
+    /**
+     * Posts a call of {@code method} made on a {@link #publisher(Class)}, keeping the plan of each method in
+     * {@code plans}.
+     */
+    void publish(Class<?> keyClass, Method method, ConcurrentMap<Method, DispatchPlan> plans, Object[] args) {
+        enforcer.enforce(this);
+        purgeCollectedSubscribers();
+
+        int generation = interfacePlans(keyClass).generation;
+        DispatchPlan plan = plans.get(method);
+        if (plan == null || plan.generation != generation) {
+            HandlerKey[] keys = plan != null ? plan.keys
+                    : new HandlerKey[]{handlerFinder.keyFromSubscribers(keyClass, method.getName(), method.getParameterTypes())};
+            plan = newDispatchPlan(new HandlerKey(keyClass, method.getName(), method.getParameterTypes()), keys, generation);
+            plans.put(method, plan);
+        }
+        BusMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordPost(keyClass, method.getName());
+        }
+        if (plan.deadEvent != null) {
+            reportDeadEvent(plan.deadEvent);
+            return;
+        }
+
+        EventHandler[] handlers = plan.handlers;
+        DispatchContext context = dispatchContext.get();
+        context.beginPost();
+        for (int i = 0; i < handlers.length; i++) {
+            enqueue(context, handlers[i], args);
+        }
+        dispatchQueuedEvents(context);
+    }
+
+    /**
+     * Posts {@code event} like {@link #post(Class, Object)} and keeps it as the latest sticky event of its class:
+     * handlers of {@code keyClass} registered later receive it as soon as they register.
+     */
+    public void postSticky(Class<?> keyClass, Object event) {
+        if (event == null) {
+            throw new NullPointerException("Event to post must not be null.");
+        }
+        if (!isStrictMode) {
+            stickyEventsOf(keyClass).put(new HandlerKey(keyClass, "", event.getClass()), new Object[]{event});
+        }
+        post(keyClass, event);
+    }
+
+    /**
+     * Posts like {@link #post(Class, String, Object...)} and keeps the arguments as the latest sticky post of this
+     * method and argument classes: handlers of {@code keyClass} registered later receive it as soon as they register.
+     */
+    public void postSticky(Class<?> keyClass, String targeMethodName, Object... args) {
+        if (args == null) {
+            throw new NullPointerException("Event to post must not be null.");
+        }
+        if (isStrictMode) {
+            Object[] stickyArgs = args.clone();
+            stickyEventsOf(keyClass).put(new HandlerKey(keyClass, targeMethodName, getMethodParameterTypes(stickyArgs)), stickyArgs);
+        }
+        post(keyClass, targeMethodName, args);
+    }
+
+    /**
+     * @return the latest sticky event of exactly {@code eventClass} posted to {@code keyClass}, or {@code null}.
+     */
+    public <E> E getStickyEvent(Class<?> keyClass, Class<E> eventClass) {
+        StickyEvents sticky = stickyEvents.get(keyClass);
+        Object[] args = sticky != null ? sticky.get(new HandlerKey(keyClass, "", eventClass)) : null;
+        return args != null ? eventClass.cast(args[0]) : null;
+    }
+
+    /**
+     * @return the arguments of the latest sticky strict post with exactly these argument classes, or {@code null}.
+     */
+    public Object[] getStickyEvent(Class<?> keyClass, String targeMethodName, Class<?>... argTypes) {
+        StickyEvents sticky = stickyEvents.get(keyClass);
+        Object[] args = sticky != null ? sticky.get(new HandlerKey(keyClass, targeMethodName, argTypes)) : null;
+        return args != null ? args.clone() : null;
+    }
+
+    /**
+     * Stops replaying the sticky event of exactly {@code eventClass} to {@code keyClass}.
+     *
+     * @return the removed event, or {@code null} if there was none.
+     */
+    public <E> E removeStickyEvent(Class<?> keyClass, Class<E> eventClass) {
+        StickyEvents sticky = stickyEvents.get(keyClass);
+        Object[] args = sticky != null ? sticky.remove(new HandlerKey(keyClass, "", eventClass)) : null;
+        return args != null ? eventClass.cast(args[0]) : null;
+    }
+
+    /**
+     * Stops replaying the sticky strict post with exactly these argument classes.
+     *
+     * @return the arguments of the removed post, or {@code null} if there was none.
+     */
+    public Object[] removeStickyEvent(Class<?> keyClass, String targeMethodName, Class<?>... argTypes) {
+        StickyEvents sticky = stickyEvents.get(keyClass);
+        return sticky != null ? sticky.remove(new HandlerKey(keyClass, targeMethodName, argTypes)) : null;
+    }
+
+    public void removeAllStickyEvents() {
+        stickyEvents.clear();
+    }
+
+    private StickyEvents stickyEventsOf(Class<?> keyClass) {
+        StickyEvents sticky = stickyEvents.get(keyClass);
+        if (sticky == null) {
+            StickyEvents stickyCreation = new StickyEvents();
+            sticky = stickyEvents.putIfAbsent(keyClass, stickyCreation);
+            if (sticky == null) {
+                sticky = stickyCreation;
+            }
+        }
+        return sticky;
+    }
+
+    /**
+     * Delivers the sticky posts of {@code keyClass} to the handlers just registered, oldest first. Only those handlers
+     * are called, subscribers registered before already received the posts.
+     */
+    private void replayStickyEvents(Class<?> keyClass, StickyEvents sticky, Map<HandlerKey, EventHandler> registered) {
+        DispatchContext context = dispatchContext.get();
+        for (Map.Entry<HandlerKey, Object[]> entry : sticky.snapshot()) {
+            context.beginPost();
+            HandlerKey signature = entry.getKey();
+            HandlerKey[] keys = isStrictMode
+                    ? strictDispatchPlanFor(signature).keys
+                    : dispatchPlanFor(keyClass, signature.argTypes[0]).keys;
+            for (HandlerKey key : keys) {
+                EventHandler handler = registered.get(key);
+                if (handler != null) {
+                    context.offer(handler, entry.getValue());
+                }
+            }
+        }
+        dispatchQueuedEvents(context);
     }
 
     public Class<?>[] getMethodParameterTypes(Object[] args) {
@@ -251,12 +940,66 @@ public class MMBus extends MMService {
     }
 
 
+    /**
+     * Queues a single event, unless the handler's {@link Coalesce} policy merges or delays it.
+     */
+    private void enqueueSingle(DispatchContext context, EventHandler handler, Object event) {
+        EventCoalescer coalescer = handler.coalescer;
+        if (coalescer == null) {
+            context.offerSingle(handler, event);
+        } else {
+            coalescer.offer(context, event, true);
+        }
+    }
+
+    /**
+     * Queues the arguments of a strict post, unless the handler's {@link Coalesce} policy merges or delays them.
+     */
+    private void enqueue(DispatchContext context, EventHandler handler, Object[] args) {
+        EventCoalescer coalescer = handler.coalescer;
+        if (coalescer == null) {
+            context.offer(handler, args);
+        } else {
+            coalescer.offer(context, args, false);
+        }
+    }
+
+    /**
+     * Delivers a payload released by an {@link EventCoalescer} timer on the thread of the handler's
+     * {@link ThreadMode}; a {@link ThreadMode#POSTING} handler is called on the timer's thread. The failure of a
+     * handler has no poster to return to, so it is logged.
+     */
+    void deliverCoalesced(EventHandler handler, Object[] args) {
+        if (!handler.isValid()) {
+            return;
+        }
+        try {
+            dispatch(handler, args);
+        } catch (RuntimeException e) {
+            Log.e("MMBus", identifier + " " + e.getMessage(), e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    private Coalesce coalesceOf(Class<?> keyClass) {
+        Object coalesce = coalesceByInterface.get(keyClass);
+        if (coalesce == null) {
+            coalesce = keyClass.getAnnotation(Coalesce.class);
+            if (coalesce == null) {
+                coalesce = NO_COALESCE;
+            }
+            coalesceByInterface.put(keyClass, coalesce);
+        }
+        return coalesce != NO_COALESCE ? (Coalesce) coalesce : null;
+    }
+
     /**
      * Queue the {@code event} for dispatch during {@link #dispatchQueuedEvents()}. Events are queued in-order of
      * occurrence so they can be dispatched in the same order.
      */
     protected void enqueueEvent(EventHandler handler, Object... event) {
-        eventsToDispatch.get().offer(new EventWithHandler(handler, event));
+        DispatchContext context = dispatchContext.get();
+        context.beginPost();
+        context.offer(handler, event);
     }
 
     /**
@@ -264,42 +1007,208 @@ public class MMBus extends MMService {
      * the queue.
      */
     protected void dispatchQueuedEvents() {
+        dispatchQueuedEvents(dispatchContext.get());
+    }
+
+    private void dispatchQueuedEvents(DispatchContext context) {
         // don't dispatch if we're already dispatching, that would allow reentrancy and out-of-order events. Instead, leave
         // the events to be dispatched after the in-progress dispatch is complete.
-        if (isDispatching.get()) {
+        if (context.isDispatching) {
             return;
         }
 
-        isDispatching.set(true);
+        context.isDispatching = true;
+        BusMetrics metrics = this.metrics;
         try {
-            while (true) {
-                EventWithHandler eventWithHandler = eventsToDispatch.get().poll();
-                if (eventWithHandler == null) {
-                    break;
+            while (!context.isEmpty()) {
+                if (metrics != null) {
+                    metrics.recordQueueDepth(context.size());
                 }
-
-                if (eventWithHandler.handler.isValid()) {
-                    dispatch( eventWithHandler.handler, eventWithHandler.event);
+                EventHandler handler = context.peekHandler();
+                try {
+                    // null once cancelled by a handler of higher priority
+                    if (handler != null && handler.isValid()) {
+                        dispatch(handler, context.peekArgs());
+                    }
+                } finally {
+                    context.removeHead();
                 }
             }
         } finally {
-            isDispatching.set(false);
+            context.isDispatching = false;
+        }
+    }
+
+    /**
+     * Installs {@code metrics} to record posts, queue depth and handler latency from now on, or removes the installed
+     * metrics if {@code null}.
+     */
+    public void setMetrics(BusMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public BusMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the values recorded by the installed {@link BusMetrics}, or {@code null} if none is installed.
+     */
+    public BusMetrics.Snapshot snapshotMetrics() {
+        BusMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return null;
+        }
+        return metrics.snapshot(mainThreadPoster.pending.get(), backgroundPoster.pending.get(), asyncPoster.pending.get());
+    }
+
+    /**
+     * Bounds the queue of deliveries waiting for the thread of {@code threadMode}; posts finding it full are handled
+     * by {@code policy}. Queues are unbounded by default, {@link Integer#MAX_VALUE} makes one unbounded again. The
+     * {@link ThreadMode#MAIN} limit also bounds, separately, the posts of {@link #postFromAnyThread} waiting for the
+     * main looper.
+     *
+     * @param threadMode {@link ThreadMode#MAIN}, {@link ThreadMode#BACKGROUND} or {@link ThreadMode#ASYNC}
+     * @param capacity   most deliveries queued and not yet started
+     */
+    public void setQueueLimit(ThreadMode threadMode, int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy must not be null.");
+        }
+        posterFor(threadMode).setLimit(capacity, policy);
+        if (threadMode == ThreadMode.MAIN) {
+            crossThreadPosts.setLimit(capacity, policy);
+        }
+    }
+
+    /**
+     * @return how many deliveries to {@code threadMode} were discarded or merged because its queue was full, for
+     * {@link ThreadMode#MAIN} including posts of {@link #postFromAnyThread}.
+     */
+    public long getDroppedEvents(ThreadMode threadMode) {
+        long dropped = posterFor(threadMode).dropped.get();
+        return threadMode == ThreadMode.MAIN ? dropped + crossThreadPosts.dropped.get() : dropped;
+    }
+
+    /**
+     * @return how many posts waited for room in the queue of {@code threadMode}, see {@link OverflowPolicy#BLOCK}, for
+     * {@link ThreadMode#MAIN} including posts of {@link #postFromAnyThread}.
+     */
+    public long getDelayedEvents(ThreadMode threadMode) {
+        long delayed = posterFor(threadMode).delayed.get();
+        return threadMode == ThreadMode.MAIN ? delayed + crossThreadPosts.delayed.get() : delayed;
+    }
+
+    private DeliveryPoster posterFor(ThreadMode threadMode) {
+        switch (threadMode) {
+            case MAIN:
+                return mainThreadPoster;
+            case BACKGROUND:
+                return backgroundPoster;
+            case ASYNC:
+                return asyncPoster;
+            default:
+                throw new IllegalArgumentException(threadMode + " deliveries are not queued.");
+        }
+    }
+
+    /**
+     * Stops the event being delivered from reaching the handlers of lower priority, or of equal priority registered
+     * later. Only a {@link ThreadMode#POSTING} handler may call it, while it handles {@code event}.
+     *
+     * @param event the event passed to the calling handler, one of its arguments for strict posts.
+     */
+    public void cancelEventDelivery(Object event) {
+        if (event == null) {
+            throw new NullPointerException("Event to cancel must not be null.");
+        }
+        DispatchContext context = dispatchContext.get();
+        if (!context.isDispatching || context.isEmpty() || context.peekHandler() == null) {
+            throw new IllegalStateException("cancelEventDelivery must be called from a handler while it handles the event.");
+        }
+        if (context.peekHandler().getThreadMode() != ThreadMode.POSTING) {
+            throw new IllegalStateException("Only POSTING handlers may cancel event delivery, not " + context.peekHandler());
+        }
+        Object[] args = context.peekArgs();
+        boolean delivered = false;
+        for (int i = 0; i < args.length && !delivered; i++) {
+            delivered = args[i] == event;
         }
+        if (!delivered) {
+            throw new IllegalArgumentException("Only the event being delivered can be cancelled: " + event);
+        }
+        context.cancelRestOfPost();
     }
 
     /**
      * Dispatches {@code event} to the handler in {@code wrapper}.  This method is an appropriate override point for
      * subclasses that wish to make event delivery asynchronous.
      *
+     * <p>Handlers are called here for {@link ThreadMode#POSTING}, and for {@link ThreadMode#MAIN} when already on
+     * the main thread; other deliveries are handed to the poster of their thread mode.
+     *
+     * <p>Single events arrive in an argument array that is reused once this method returns; subclasses delivering
+     * later must copy {@code args}.
+     *
      * @param args   event to dispatch.
      * @param wrapper wrapper that will call the handler.
      */
     protected void dispatch( EventHandler wrapper, Object... args) {
+        DeliveryPoster poster;
+        switch (wrapper.getThreadMode()) {
+            case MAIN:
+                // deliveries already waiting for the main looper go first, even for a post made on it
+                if (Looper.myLooper() == Looper.getMainLooper() && mainThreadPoster.pending.get() == 0) {
+                    invokeHandler(wrapper, args);
+                    return;
+                }
+                poster = mainThreadPoster;
+                break;
+            case BACKGROUND:
+                poster = backgroundPoster;
+                break;
+            case ASYNC:
+                poster = asyncPoster;
+                break;
+            default:
+                invokeHandler(wrapper, args);
+                return;
+        }
+        DeliveryPoster.PendingDelivery delivery = poster.enqueue(wrapper, args.clone());
+        EventCoalescer coalescer = wrapper.coalescer;
+        if (coalescer != null && delivery != null) {
+            coalescer.queued(delivery);
+        }
+    }
+
+    /**
+     * Calls the handler on the current thread, rethrowing its failure as a {@link RuntimeException}. Timed when
+     * {@link BusMetrics} are installed.
+     */
+    void invokeHandler(EventHandler wrapper, Object[] args) {
+        BusMetrics metrics = this.metrics;
+        if (metrics != null) {
+            long started = System.nanoTime();
+            try {
+                callHandler(wrapper, args);
+            } finally {
+                metrics.recordInvocation(wrapper, System.nanoTime() - started, Looper.myLooper() == Looper.getMainLooper());
+            }
+            return;
+        }
+        callHandler(wrapper, args);
+    }
+
+    private void callHandler(EventHandler wrapper, Object[] args) {
         try {
             wrapper.handleEvent(args);
         } catch (InvocationTargetException e) {
+            // the declared types, the args may hold nulls
             StringBuilder methodParaStr = new StringBuilder();
-            for (Class<?> cls : getMethodParameterTypes(args)) {
+            for (Class<?> cls : wrapper.getMethod().getParameterTypes()) {
                 methodParaStr.append(" ").append(cls.getName());
             }
             throwRuntimeException("Could not dispatch event: " + methodParaStr.toString() + " to handler " + wrapper, e);
@@ -307,95 +1216,303 @@ public class MMBus extends MMService {
     }
 
     /**
-     * Retrieves a mutable set of the currently registered handlers for {@code type}.  If no handlers are currently
-     * registered for {@code type}, this method may either return {@code null} or an empty set.
+     * Calls a handler for a delivery queued by a poster. The handler may have been unregistered in the meantime, and
+     * its failure has no poster to return to, so it is logged.
+     */
+    void invokeQueued(EventHandler wrapper, Object[] args) {
+        if (!wrapper.isValid()) {
+            return;
+        }
+        try {
+            invokeHandler(wrapper, args);
+        } catch (RuntimeException e) {
+            Log.e("MMBus", identifier + " " + e.getMessage(), e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * Retrieves the currently registered handlers for {@code type}, by descending priority. The array must not be
+     * modified.
      *
      * @param type type of handlers to retrieve.
-     * @return currently registered handlers, or {@code null}.
+     * @return currently registered handlers, or {@code null} if there are none.
      */
-    Set<EventHandler> getHandlersForEventType(String type) {
+    EventHandler[] getHandlersForEventType(HandlerKey type) {
         return handlersByType.get(type);
     }
 
     /**
-     * Flattens a class's type hierarchy into a set of Class objects.  The set will include all superclasses
-     * (transitively), and all interfaces implemented by these superclasses.
-     *
-     * @param concreteClass class whose type hierarchy will be retrieved.
-     * @return {@code concreteClass}'s complete type hierarchy, flattened and uniqued.
+     * Plans of {@code keyClass}, created on first use.
      */
-    Set<Class<?>> flattenHierarchy(Class<?> concreteClass) {
-        Set<Class<?>> classes = flattenHierarchyCache.get(concreteClass);
-        if (classes == null) {
-            classes = getClassesFor(concreteClass);
-            flattenHierarchyCache.put(concreteClass, classes);
+    InterfacePlans interfacePlans(Class<?> keyClass) {
+        InterfacePlans plans = dispatchPlans.get(keyClass);
+        if (plans == null) {
+            InterfacePlans plansCreation = new InterfacePlans();
+            plans = dispatchPlans.putIfAbsent(keyClass, plansCreation);
+            if (plans == null) {
+                plans = plansCreation;
+            }
         }
+        return plans;
+    }
 
-        return classes;
+    /**
+     * Plan of a non-strict post of {@code eventClass} to {@code keyClass}. The hierarchy is flattened once per pair and
+     * the handlers resolved again only after a register or unregister on {@code keyClass}.
+     */
+    DispatchPlan dispatchPlanFor(Class<?> keyClass, Class<?> eventClass) {
+        InterfacePlans plans = interfacePlans(keyClass);
+        int generation = plans.generation;
+        DispatchPlan plan = plans.byEventClass.get(eventClass);
+        if (plan != null && plan.generation == generation) {
+            return plan;
+        }
+
+        HandlerKey[] keys;
+        if (plan != null) {
+            keys = plan.keys;
+        } else {
+            Set<Class<?>> dispatchTypes = flattenHierarchy(eventClass);
+            keys = new HandlerKey[dispatchTypes.size()];
+            int i = 0;
+            for (Class<?> eventType : dispatchTypes) {
+                keys[i++] = handlerFinder.keyFromSubscribers(keyClass, "", eventType);
+            }
+        }
+        plan = newDispatchPlan(new HandlerKey(keyClass, "", eventClass), keys, generation);
+        plans.byEventClass.put(eventClass, plan);
+        return plan;
     }
 
-    Set<Class<?>[]> flattenHierarchy(Class<?>[] concreteClass) {
-        Set<Class<?>[]> classes = flattenArrayHierarchyCache.get(concreteClass);
-        if (classes == null) {
-            int length = concreteClass.length;
-            List<Set<Class<?>>> multiClassList = new ArrayList<>();
-            for (int i = 0; i < length; i++)
-            {
-                Class<?> curClass = concreteClass[i];
-                multiClassList.add(flattenHierarchy(curClass));
-            }
-            final Set<Class<?>[]> resultSet = new HashSet<>();
-            Class<?>[] result = new Class[length];
-            classMultiFlatten(multiClassList, 0, result, new ClassMultiFlattenInterface() {
-                @Override
-                public void complete(Class<?>[] result) {
-                    resultSet.add(result);
+    /**
+     * Plan of a strict post of {@code signature}, which may be the thread's probe key: it is only copied when the plan
+     * is built. Its keys are resolved once per concrete signature, see {@link #strictKeys}.
+     */
+    DispatchPlan strictDispatchPlanFor(HandlerKey signature) {
+        Class<?> keyClass = signature.keyClass;
+        String methodName = signature.methodName;
+        int generation = interfacePlans(keyClass).generation;
+        DispatchPlan plan = strictDispatchPlanCache.get(signature);
+        if (plan != null && plan.generation == generation) {
+            return plan;
+        }
+        Class<?>[] argTypes = signature.argTypes.clone();
+        signature = new HandlerKey(keyClass, methodName, argTypes);
+
+        HandlerKey[] keys;
+        if (plan != null) {
+            keys = plan.keys;
+        } else {
+            keys = strictKeys(keyClass, methodName, argTypes);
+        }
+        plan = newDispatchPlan(signature, keys, generation);
+        strictDispatchPlanCache.put(signature, plan);
+        return plan;
+    }
+
+    /**
+     * Registry keys of the methods of {@code keyClass} named {@code methodName} whose parameters accept arguments of
+     * {@code argTypes}, each parameter being the argument's class or one of its supertypes. Ordered from the most
+     * specific to the most general: by the position of the first parameter in the hierarchy of the first argument as
+     * returned by {@link #flattenHierarchy(Class)}, then of the second, and so on.
+     *
+     * <p>Only the declared overloads are matched, the ones handlers are registered under, so the cost does not grow
+     * with the combinations of the argument hierarchies.
+     */
+    @SuppressWarnings("unchecked")
+    private HandlerKey[] strictKeys(Class<?> keyClass, String methodName, Class<?>[] argTypes) {
+        List<Class<?>>[] hierarchies = new List[argTypes.length];
+        for (int i = 0; i < argTypes.length; i++) {
+            hierarchies[i] = new ArrayList<Class<?>>(flattenHierarchy(argTypes[i]));
+        }
+        final Map<HandlerKey, int[]> ranks = new HashMap<HandlerKey, int[]>();
+        for (Method method : keyClass.getDeclaredMethods()) {
+            if (method.isBridge() || !method.getName().equals(methodName)
+                    || method.getParameterTypes().length != argTypes.length) {
+                continue;
+            }
+            // the finder boxes primitive parameters, as posted arguments are
+            HandlerKey key = handlerFinder.keyFromSubscribers(keyClass, methodName, method.getParameterTypes());
+            int[] rank = new int[argTypes.length];
+            for (int i = 0; i < argTypes.length && rank != null; i++) {
+                rank[i] = hierarchies[i].indexOf(key.argTypes[i]);
+                if (rank[i] < 0) {
+                    rank = null;
                 }
-            });
-            flattenArrayHierarchyCache.put(concreteClass, resultSet);
-            classes = resultSet;
+            }
+            if (rank != null) {
+                ranks.put(key, rank);
+            }
         }
+        HandlerKey[] keys = ranks.keySet().toArray(new HandlerKey[ranks.size()]);
+        Arrays.sort(keys, new Comparator<HandlerKey>() {
+            @Override
+            public int compare(HandlerKey lhs, HandlerKey rhs) {
+                int[] l = ranks.get(lhs);
+                int[] r = ranks.get(rhs);
+                for (int i = 0; i < l.length; i++) {
+                    if (l[i] != r[i]) {
+                        return l[i] < r[i] ? -1 : 1;
+                    }
+                }
+                return 0;
+            }
+        });
+        return keys;
+    }
 
-        return classes;
+    /**
+     * Resolves the handlers of {@code keys} into a plan, attaching the {@link DeadEvent} of {@code signature} if there
+     * are none. The dead event outlives the plan, so its count survives rebuilds and plan cache evictions, as long as
+     * the signature stays among the last {@link #MAX_DEAD_EVENTS} dead ones.
+     */
+    private DispatchPlan newDispatchPlan(HandlerKey signature, HandlerKey[] keys, int generation) {
+        EventHandler[] handlers = resolveHandlers(keys);
+        if (handlers.length != 0) {
+            return new DispatchPlan(keys, handlers, generation, null);
+        }
+        DeadEvent deadEvent = deadEvents.get(signature);
+        if (deadEvent == null) {
+            DeadEvent deadEventCreation = new DeadEvent(signature, declaresSignature(signature, keys));
+            deadEvent = deadEvents.putIfAbsent(signature, deadEventCreation);
+            if (deadEvent == null) {
+                deadEvent = deadEventCreation;
+            }
+        }
+        return new DispatchPlan(keys, handlers, generation, deadEvent);
     }
 
-    void classMultiFlatten(List<Set<Class<?>>> concreteClass, int index, Class<?>[] result, ClassMultiFlattenInterface callback)
-    {
-        Set<Class<?>> curClasses = concreteClass.get(index);
-        for (Class<?> cur : curClasses)
-        {
-            result[index] = cur;
-            if (index == concreteClass.size() - 1)
-            {
-                Class<?>[] clone = result.clone();
-                callback.complete(clone);
+    /**
+     * Whether a method of the interface would receive a post of {@code signature}, i.e. one of the registry keys the
+     * post is looked up under is the key of a declared method. Done once per dead signature.
+     */
+    private boolean declaresSignature(HandlerKey signature, HandlerKey[] keys) {
+        List<HandlerKey> lookedUp = Arrays.asList(keys);
+        boolean strict = !signature.methodName.isEmpty();
+        for (Method method : signature.keyClass.getMethods()) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (strict ? !method.getName().equals(signature.methodName) : parameterTypes.length != 1) {
+                continue;
             }
-            else
-            {
-                classMultiFlatten(concreteClass, index + 1, result, callback);
+            if (lookedUp.contains(handlerFinder.keyFromSubscribers(signature.keyClass, signature.methodName, parameterTypes))) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Counts a post that reached no handler; the first one of its signature is reported to the listener and, in debug
+     * mode, logged.
+     */
+    private void reportDeadEvent(DeadEvent deadEvent) {
+        if (deadEvent.count.incrementAndGet() != 1) {
+            return;
+        }
+        if (isDebugMode && !deadEvent.isSignatureDeclared()) {
+            Log.e("MMBus", "post方法名错误或者传参错误：" + deadEvent);
+        }
+        DeadEvent.Listener listener = deadEventListener;
+        if (listener != null) {
+            listener.onDeadEvent(deadEvent);
+        }
     }
 
-    interface ClassMultiFlattenInterface
-    {
-        void complete(Class<?>[] result);
+    /**
+     * Installs {@code listener} to be told about every signature whose posts reach no handler, or removes the
+     * installed listener if {@code null}. Signatures that already had a dead post are not reported again.
+     */
+    public void setDeadEventListener(DeadEvent.Listener listener) {
+        this.deadEventListener = listener;
+    }
+
+    /**
+     * @return the signatures posted so far without reaching a handler, with their counts; at most
+     * {@value #MAX_DEAD_EVENTS} of them are kept.
+     */
+    public List<DeadEvent> getDeadEvents() {
+        return deadEvents.values();
+    }
+
+    /**
+     * Snapshot of the handlers currently registered under {@code keys}, by descending priority, then in key and
+     * registration order.
+     */
+    private EventHandler[] resolveHandlers(HandlerKey[] keys) {
+        synchronized (registryLock) {
+            return resolveHandlersLocked(keys);
+        }
+    }
+
+    private EventHandler[] resolveHandlersLocked(HandlerKey[] keys) {
+        EventHandler[] single = null;
+        List<EventHandler> resolved = null;
+        for (HandlerKey key : keys) {
+            EventHandler[] wrappers = getHandlersForEventType(key);
+            if (wrappers == null) {
+                continue;
+            }
+            if (single == null && resolved == null) {
+                // the common case of one registered key needs no copy, its array is already sorted
+                single = wrappers;
+                continue;
+            }
+            if (resolved == null) {
+                resolved = new ArrayList<EventHandler>(Arrays.asList(single));
+            }
+            resolved.addAll(Arrays.asList(wrappers));
+        }
+        if (resolved == null) {
+            return single != null ? single : DispatchPlan.NO_HANDLERS;
+        }
+        EventHandler[] handlers = resolved.toArray(new EventHandler[resolved.size()]);
+        Arrays.sort(handlers, BY_PRIORITY);
+        return handlers;
     }
 
+    /**
+     * Descending priority. {@link Arrays#sort(Object[], Comparator)} is stable, so equal priorities keep their order.
+     */
+    private static final Comparator<EventHandler> BY_PRIORITY = new Comparator<EventHandler>() {
+        @Override
+        public int compare(EventHandler lhs, EventHandler rhs) {
+            int l = lhs.getPriority();
+            int r = rhs.getPriority();
+            return l > r ? -1 : (l == r ? 0 : 1);
+        }
+    };
+
+    /**
+     * Flattens a class's type hierarchy into a set of Class objects.  The set will include all superclasses
+     * (transitively), and all interfaces implemented by these superclasses.
+     *
+     * @param concreteClass class whose type hierarchy will be retrieved.
+     * @return {@code concreteClass}'s complete type hierarchy, flattened and uniqued.
+     */
+    Set<Class<?>> flattenHierarchy(Class<?> concreteClass) {
+        Set<Class<?>> classes = flattenHierarchyCache.get(concreteClass);
+        if (classes == null) {
+            classes = getClassesFor(concreteClass);
+            flattenHierarchyCache.put(concreteClass, classes);
+        }
+
+        return classes;
+    }
 
     private Set<Class<?>> getClassesFor(Class<?> concreteClass) {
         List<Class<?>> parents = new LinkedList<Class<?>>();
-        Set<Class<?>> classes = new HashSet<Class<?>>();
+        Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
 
-        parents.add(concreteClass);
+        // superclasses first, so handlers of classes keep their order ahead of handlers of interfaces
+        for (Class<?> clazz = concreteClass; clazz != null; clazz = clazz.getSuperclass()) {
+            classes.add(clazz);
+            parents.addAll(Arrays.asList(clazz.getInterfaces()));
+        }
 
         while (!parents.isEmpty()) {
             Class<?> clazz = parents.remove(0);
-            classes.add(clazz);
-
-            Class<?> parent = clazz.getSuperclass();
-            if (parent != null) {
-                parents.add(parent);
+            if (classes.add(clazz)) {
+                parents.addAll(Arrays.asList(clazz.getInterfaces()));
             }
         }
         return classes;
@@ -415,22 +1532,23 @@ public class MMBus extends MMService {
         }
     }
 
-    private final Map<Class<?>, Set<Class<?>>> flattenHierarchyCache =
-            new HashMap<Class<?>, Set<Class<?>>>();
-
-    private final Map<Class<?>[], Set<Class<?>[]>> flattenArrayHierarchyCache =
-            new HashMap<Class<?>[], Set<Class<?>[]>>();
+    private final ConcurrentMap<Class<?>, Set<Class<?>>> flattenHierarchyCache =
+            new ConcurrentHashMap<Class<?>, Set<Class<?>>>();
 
     /**
-     * Simple struct representing an event and its handler.
+     * Non-strict plans of one subscriber interface and the generation every cached plan of that interface, strict
+     * ones included, must match to be used.
      */
-    static class EventWithHandler {
-        final Object[] event;
-        final EventHandler handler;
-
-        public EventWithHandler(EventHandler handler, Object... event) {
-            this.event = event;
-            this.handler = handler;
+    static final class InterfacePlans {
+        final ConcurrentMap<Class<?>, DispatchPlan> byEventClass = new ConcurrentHashMap<Class<?>, DispatchPlan>();
+        volatile int generation;
+
+        /**
+         * Called with the registry lock held, once the handlers of the interface changed; plans built before are
+         * rebuilt on their next post.
+         */
+        synchronized void invalidate() {
+            generation++;
         }
     }
 }
@@ -0,0 +1,59 @@
+package xyz.mumiao.mmbus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers {@link ThreadMode#MAIN} events on the main looper, in the order they were queued. One message drains
+ * the queue for at most {@link #MAX_MILLIS_PER_MESSAGE} and posts itself again if deliveries are left, so a burst
+ * never blocks input or drawing for long.
+ */
+final class MainThreadPoster extends DeliveryPoster implements Handler.Callback {
+
+    static final long MAX_MILLIS_PER_MESSAGE = 10;
+
+    private final AtomicBoolean handlerActive = new AtomicBoolean();
+    private final Handler handler;
+
+    MainThreadPoster(MMBus bus) {
+        super(bus);
+        handler = new Handler(Looper.getMainLooper(), this);
+    }
+
+    @Override
+    void schedule() {
+        if (handlerActive.compareAndSet(false, true)) {
+            handler.sendEmptyMessage(0);
+        }
+    }
+
+    @Override
+    boolean isDeliveryThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        long started = SystemClock.uptimeMillis();
+        while (true) {
+            PendingDelivery delivery = poll();
+            if (delivery == null) {
+                handlerActive.set(false);
+                // a delivery queued between the poll and the reset found the handler still active
+                if (isQueueEmpty() || !handlerActive.compareAndSet(false, true)) {
+                    return true;
+                }
+                continue;
+            }
+            delivery.run();
+            if (SystemClock.uptimeMillis() - started >= MAX_MILLIS_PER_MESSAGE) {
+                handler.sendEmptyMessage(0);
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * What a bounded {@link ThreadMode#MAIN}, {@link ThreadMode#BACKGROUND} or {@link ThreadMode#ASYNC} queue does with a
+ * delivery that finds it full, see {@link MMBus#setQueueLimit(ThreadMode, int, OverflowPolicy)}. The {@code MAIN}
+ * policy also applies to posts of {@link MMBus#postFromAnyThread} waiting for the main looper.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The posting thread waits until a queued delivery has started, counted as delayed. Threads that deliver the
+     * bus's events themselves (the main thread for {@code MAIN}, and the MMBus threads) never wait, their deliveries
+     * are queued past the bound so a handler cannot deadlock on its own queue.
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued delivery is discarded to make room, counted as dropped.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new delivery is discarded, counted as dropped.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The new arguments replace those of the newest delivery still queued for the same handler, keeping its place,
+     * counted as dropped. If none is queued for it, the oldest queued delivery is discarded as with
+     * {@link #DROP_OLDEST}.
+     */
+    COALESCE
+}
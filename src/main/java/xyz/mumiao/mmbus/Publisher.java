@@ -0,0 +1,40 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Backs the proxy returned by {@link MMBus#publisher(Class)}: every call of an interface method posts its arguments
+ * to the handlers of that method. The plan of each method is kept here and only resolved again after a register or
+ * unregister on the interface.
+ */
+final class Publisher implements InvocationHandler {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final MMBus bus;
+    private final Class<?> keyClass;
+    private final ConcurrentMap<Method, DispatchPlan> plans = new ConcurrentHashMap<Method, DispatchPlan>();
+
+    Publisher(MMBus bus, Class<?> keyClass) {
+        this.bus = bus;
+        this.keyClass = keyClass;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return "[MMBus publisher " + keyClass.getName() + " of " + bus + "]";
+        }
+        bus.publish(keyClass, method, plans, args != null ? args : NO_ARGS);
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Handle of one {@link MMBus#register(Class, Object)}, {@link MMBus#registerWeak(Class, Object)} or
+ * {@link MMBus#registerAll(Object, Class[])} call. It keeps the handlers that call added, so {@link #unregister()}
+ * removes them without scanning the subscriber again.
+ */
+public final class Registration {
+
+    private final MMBus bus;
+    /** Registry key of each handler in {@link #handlers}, the keys of one interface are adjacent. */
+    final HandlerKey[] keys;
+    final EventHandler[] handlers;
+    private boolean registered = true;
+
+    Registration(MMBus bus, HandlerKey[] keys, EventHandler[] handlers) {
+        this.bus = bus;
+        this.keys = keys;
+        this.handlers = handlers;
+    }
+
+    /**
+     * Removes the handlers added by this registration. Later calls do nothing.
+     */
+    public void unregister() {
+        bus.unregister(this);
+    }
+
+    public synchronized boolean isRegistered() {
+        return registered;
+    }
+
+    /**
+     * @return true for the first call only, whose caller then removes the handlers.
+     */
+    synchronized boolean markUnregistered() {
+        if (!registered) {
+            return false;
+        }
+        registered = false;
+        return true;
+    }
+}
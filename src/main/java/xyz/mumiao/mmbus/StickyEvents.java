@@ -0,0 +1,49 @@
+package xyz.mumiao.mmbus;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latest sticky post of each signature of one subscriber interface, replayed to handlers registered later.
+ *
+ * <p>At most {@link #MAX_PER_INTERFACE} signatures are kept; beyond that the least recently posted or read one is
+ * dropped.
+ */
+final class StickyEvents {
+
+    static final int MAX_PER_INTERFACE = 16;
+
+    /** Arguments of the latest post, by post signature, least recently used first. */
+    private final LinkedHashMap<HandlerKey, Object[]> events = new LinkedHashMap<HandlerKey, Object[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<HandlerKey, Object[]> eldest) {
+            return size() > MAX_PER_INTERFACE;
+        }
+    };
+
+    synchronized void put(HandlerKey signature, Object[] args) {
+        events.put(signature, args);
+    }
+
+    synchronized Object[] get(HandlerKey signature) {
+        return events.get(signature);
+    }
+
+    synchronized Object[] remove(HandlerKey signature) {
+        return events.remove(signature);
+    }
+
+    /**
+     * Copy of the stored posts, least recently used first, to replay without holding the lock.
+     */
+    synchronized List<Map.Entry<HandlerKey, Object[]>> snapshot() {
+        List<Map.Entry<HandlerKey, Object[]>> snapshot = new ArrayList<Map.Entry<HandlerKey, Object[]>>(events.size());
+        for (Map.Entry<HandlerKey, Object[]> entry : events.entrySet()) {
+            snapshot.add(new AbstractMap.SimpleImmutableEntry<HandlerKey, Object[]>(entry));
+        }
+        return snapshot;
+    }
+}
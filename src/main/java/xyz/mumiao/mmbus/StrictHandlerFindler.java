@@ -12,35 +12,48 @@ class StrictHandlerFindler  implements HandlerFinder {
     /**
      * Cache event bus subscriber methods for each class.
      */
-    private final Map<Class<?>, Map<String, Method>> SUBSCRIBERS_CACHE = new HashMap<Class<?>, Map<String, Method>>(); //接口类：（key：方法名）
+    private final Map<Class<?>, Map<HandlerKey, Method>> SUBSCRIBERS_CACHE = new HashMap<Class<?>, Map<HandlerKey, Method>>(); //接口类：（key：方法名）
+
+    /**
+     * Thread mode of each cached subscriber method.
+     */
+    private final Map<Method, ThreadMode> THREAD_MODES_CACHE = new HashMap<Method, ThreadMode>();
+
+    /**
+     * Priority of each cached subscriber method.
+     */
+    private final Map<Method, Integer> PRIORITIES_CACHE = new HashMap<Method, Integer>();
 
     private void loadAnnotatedMethods(Class<?> listenerClass) {
         if (!listenerClass.isInterface())
             throw new IllegalArgumentException("Class: " + listenerClass + " must be interface.");
 
-        Map<String, Method> subscriberMethods = new HashMap<String, Method>(); //包含该类所有方法的map， key:入参class，value:method
+        Map<HandlerKey, Method> subscriberMethods = new HashMap<HandlerKey, Method>(); //包含该类所有方法的map， key:入参class，value:method
         for (Method method : listenerClass.getDeclaredMethods()) {
             if (method.isBridge()) {
                 continue;
             }
             Class<?>[] parameterTypes = method.getParameterTypes();
-            String key = keyFromSubscribers(listenerClass, method.getName(), parameterTypes);
+            HandlerKey key = keyFromSubscribers(listenerClass, method.getName(), parameterTypes);
             subscriberMethods.put(key, method);
+            THREAD_MODES_CACHE.put(method, ThreadMode.of(method));
+            PRIORITIES_CACHE.put(method, ThreadMode.priorityOf(method));
         }
         SUBSCRIBERS_CACHE.put(listenerClass, subscriberMethods);
     }
 
     @Override
-    public <T> Map<String, EventHandler<T>> findAllSubscribers(Class<T> cls, T listener) {
-        Map<String, EventHandler<T>> handlersInMethod = new HashMap<String, EventHandler<T>>();
+    public <T> Map<HandlerKey, EventHandler<T>> findAllSubscribers(Class<T> cls, T listener) {
+        Map<HandlerKey, EventHandler<T>> handlersInMethod = new HashMap<HandlerKey, EventHandler<T>>();
 
         if (!SUBSCRIBERS_CACHE.containsKey(cls)) {
             loadAnnotatedMethods(cls);
         }
-        Map<String, Method> methods = SUBSCRIBERS_CACHE.get(cls);
+        Map<HandlerKey, Method> methods = SUBSCRIBERS_CACHE.get(cls);
         if (!methods.isEmpty()) {
-            for (Map.Entry<String, Method> e : methods.entrySet()) {
-                handlersInMethod.put(e.getKey(), new EventHandler<T>(listener, e.getValue()));
+            for (Map.Entry<HandlerKey, Method> e : methods.entrySet()) {
+                handlersInMethod.put(e.getKey(), new EventHandler<T>(listener, e.getValue(),
+                        THREAD_MODES_CACHE.get(e.getValue()), PRIORITIES_CACHE.get(e.getValue()), null, -1));
             }
         }
         return handlersInMethod;
@@ -48,13 +61,18 @@ class StrictHandlerFindler  implements HandlerFinder {
 
 
     @Override
-    public String keyFromSubscribers(Class<?> keyClass, String methodName, Class<?>... eventClass) {
-        StringBuilder methodParaStr = new StringBuilder();
-        for (Class<?> cls: eventClass ) {
-            cls = convertBaseDataType(cls);
-            methodParaStr.append("-").append(cls.getName());
+    public HandlerKey keyFromSubscribers(Class<?> keyClass, String methodName, Class<?>... eventClass) {
+        Class<?>[] argTypes = eventClass;
+        for (int i = 0; i < eventClass.length; i++) {
+            Class<?> cls = convertBaseDataType(eventClass[i]);
+            if (cls != eventClass[i]) {
+                if (argTypes == eventClass) {
+                    argTypes = eventClass.clone();
+                }
+                argTypes[i] = cls;
+            }
         }
-        return keyClass.getName() + "-" + methodName + methodParaStr.toString();
+        return new HandlerKey(keyClass, methodName, argTypes);
     }
 
     private Class<?> convertBaseDataType(Class<?> cls)
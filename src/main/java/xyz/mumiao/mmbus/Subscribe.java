@@ -0,0 +1,25 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Delivery options of a subscriber interface or of one of its methods. An annotation on a method overrides the one
+ * on its interface.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Subscribe {
+
+    ThreadMode threadMode() default ThreadMode.POSTING;
+
+    /**
+     * Handlers with a higher priority are called first for the same post and may stop it from reaching the others with
+     * {@link MMBus#cancelEventDelivery(Object)}. Handlers of equal priority are called in registration order.
+     */
+    int priority() default 0;
+}
@@ -0,0 +1,15 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Subscriber methods of {@link BusInterface} interfaces, generated at compile time by {@code mmbus-compiler}.
+ *
+ * <p>Install the generated index with {@link MMBus#addSubscriberIndex(SubscriberIndex)} before the first register.
+ */
+public interface SubscriberIndex {
+
+    /**
+     * @param keyClass subscriber interface
+     * @return the indexed methods of {@code keyClass}, or {@code null} if this index does not know it.
+     */
+    SubscriberInfo getSubscriberInfo(Class<?> keyClass);
+}
@@ -0,0 +1,39 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Indexed description of one subscriber interface: the interface, its declared methods and the invoker calling them.
+ */
+public class SubscriberInfo {
+
+    private final Class<?> keyClass;
+    private final EventInvoker invoker;
+    private final SubscriberMethod[] methods;
+
+    public SubscriberInfo(Class<?> keyClass, SubscriberMethod... methods) {
+        this(keyClass, null, methods);
+    }
+
+    /**
+     * @param invoker generated invoker for {@code keyClass}, or {@code null} to deliver through reflection.
+     */
+    public SubscriberInfo(Class<?> keyClass, EventInvoker invoker, SubscriberMethod... methods) {
+        if (keyClass == null) {
+            throw new NullPointerException("SubscriberInfo keyClass cannot be null.");
+        }
+        this.keyClass = keyClass;
+        this.invoker = invoker;
+        this.methods = methods;
+    }
+
+    public Class<?> getKeyClass() {
+        return keyClass;
+    }
+
+    public EventInvoker getInvoker() {
+        return invoker;
+    }
+
+    public SubscriberMethod[] getMethods() {
+        return methods;
+    }
+}
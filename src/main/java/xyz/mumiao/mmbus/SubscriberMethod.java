@@ -0,0 +1,46 @@
+package xyz.mumiao.mmbus;
+
+/**
+ * Indexed signature of one subscriber method: its name, its erased parameter types and its {@link Subscribe} options.
+ */
+public class SubscriberMethod {
+
+    private final String methodName;
+    private final ThreadMode threadMode;
+    private final int priority;
+    private final Class<?>[] parameterTypes;
+
+    public SubscriberMethod(String methodName, Class<?>... parameterTypes) {
+        this(methodName, ThreadMode.POSTING, parameterTypes);
+    }
+
+    public SubscriberMethod(String methodName, ThreadMode threadMode, Class<?>... parameterTypes) {
+        this(methodName, threadMode, 0, parameterTypes);
+    }
+
+    public SubscriberMethod(String methodName, ThreadMode threadMode, int priority, Class<?>... parameterTypes) {
+        if (methodName == null) {
+            throw new NullPointerException("SubscriberMethod methodName cannot be null.");
+        }
+        this.methodName = methodName;
+        this.threadMode = threadMode;
+        this.priority = priority;
+        this.parameterTypes = parameterTypes;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return parameterTypes;
+    }
+}
@@ -0,0 +1,48 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.reflect.Method;
+
+/**
+ * Thread on which {@link MMBus} calls a handler, declared with {@link Subscribe}.
+ */
+public enum ThreadMode {
+
+    /** Called on the posting thread, before {@code post} returns. This is the default. */
+    POSTING,
+
+    /** Called on the main thread: directly if posted from it, otherwise in order through the main looper. */
+    MAIN,
+
+    /**
+     * Queued to the background thread shared by all buses and called there in posting order. Handlers should return
+     * quickly, they hold up every other background delivery.
+     */
+    BACKGROUND,
+
+    /** Always queued to the shared async pool; deliveries run concurrently and in no particular order. */
+    ASYNC;
+
+    /**
+     * Reads {@link Subscribe} from {@code method}, falling back to the interface declaring it.
+     */
+    static ThreadMode of(Method method) {
+        Subscribe subscribe = subscribeOf(method);
+        return subscribe != null ? subscribe.threadMode() : POSTING;
+    }
+
+    /**
+     * Priority declared with {@link Subscribe} on {@code method} or, failing that, on its interface.
+     */
+    static int priorityOf(Method method) {
+        Subscribe subscribe = subscribeOf(method);
+        return subscribe != null ? subscribe.priority() : 0;
+    }
+
+    private static Subscribe subscribeOf(Method method) {
+        Subscribe subscribe = method.getAnnotation(Subscribe.class);
+        if (subscribe == null) {
+            subscribe = method.getDeclaringClass().getAnnotation(Subscribe.class);
+        }
+        return subscribe;
+    }
+}
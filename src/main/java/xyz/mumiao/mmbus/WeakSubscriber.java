@@ -0,0 +1,18 @@
+package xyz.mumiao.mmbus;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Weak reference to a subscriber registered with {@link MMBus#registerWeak(Class, Object)}, shared by all of its
+ * handlers. Once the subscriber is collected, the bus finds its {@link #registration} on the reference queue and
+ * removes it.
+ */
+final class WeakSubscriber extends WeakReference<Object> {
+
+    Registration registration;
+
+    WeakSubscriber(Object subscriber, ReferenceQueue<Object> queue) {
+        super(subscriber, queue);
+    }
+}
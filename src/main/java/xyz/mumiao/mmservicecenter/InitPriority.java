@@ -0,0 +1,27 @@
+package xyz.mumiao.mmservicecenter;
+
+/**
+ * Service的初始化时机，通过 {@link ServiceInit} 声明，由 {@link MMServiceCenter#warmUp(Class[])} 安排
+ */
+public enum InitPriority {
+
+    /**
+     * 立即在调用warmUp的线程上初始化，未声明 {@link ServiceInit} 的Service也是如此
+     */
+    EAGER,
+
+    /**
+     * 首帧绘制后在后台线程初始化，需要在首帧绘制后调用 {@link MMServiceCenter#notifyFirstFrame()}
+     */
+    AFTER_FIRST_FRAME,
+
+    /**
+     * 主线程空闲时初始化，每次空闲只初始化一个
+     */
+    IDLE,
+
+    /**
+     * 不预先初始化，第一次getService时才初始化
+     */
+    ON_DEMAND
+}
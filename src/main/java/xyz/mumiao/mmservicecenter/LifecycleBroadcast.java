@@ -0,0 +1,337 @@
+package xyz.mumiao.mmservicecenter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把一个生命周期通知发给Service快照中的每个Service：按 {@link ServiceLifecycle#group()} 分组依次进行，
+ * 组内声明了 {@link ServiceLifecycle#parallel()} 的Service在线程池中并行回调，其余的在通知线程上依次回调。
+ * 并行回调从提交到线程池时开始计时，通知线程最多等到本组的截止时间；超时的回调不再等待，但仍会执行完，
+ * 仍在执行的超时回调不占用线程池的名额。同一时间只进行一个通知，不同线程发出的通知依次进行。
+ */
+final class LifecycleBroadcast {
+
+    enum Event {
+        ENTER_FOREGROUND(ServiceTraceEvent.Phase.ENTER_FOREGROUND),
+        ENTER_BACKGROUND(ServiceTraceEvent.Phase.ENTER_BACKGROUND),
+        RELOAD_DATA(ServiceTraceEvent.Phase.RELOAD_DATA),
+        CLEAR_DATA(ServiceTraceEvent.Phase.CLEAR_DATA);
+
+        final ServiceTraceEvent.Phase phase;
+
+        Event(ServiceTraceEvent.Phase phase) {
+            this.phase = phase;
+        }
+
+        void deliver(MMServiceInterface service) {
+            switch (this) {
+                case ENTER_FOREGROUND:
+                    service.onServiceEnterForeground();
+                    break;
+                case ENTER_BACKGROUND:
+                    service.onServiceEnterBackground();
+                    break;
+                case RELOAD_DATA:
+                    service.onServiceReloadData();
+                    break;
+                default:
+                    service.onServiceClearData();
+            }
+        }
+    }
+
+    /**
+     * 保证通知依次进行，callTerminate也持有它；可重入，回调中可以再次发出通知
+     */
+    static final Object LOCK = new Object();
+
+    /**
+     * 并行回调Service的线程池，所有通知共用；超时仍在执行的回调各自多占一个线程，见 {@link #resizePool(int)}
+     */
+    static final ThreadPoolExecutor EXECUTOR;
+
+    /**
+     * 到截止时间时把本组未返回的回调记为超时的线程
+     */
+    static final ScheduledThreadPoolExecutor TIMER;
+
+    /**
+     * 依次执行 {@link #start} 发出的异步通知的线程
+     */
+    static final ExecutorService BROADCASTER;
+
+    /** 超时后仍在执行的并行回调数量，只在 {@link #resizePool(int)} 中修改 */
+    private static int stuckWorkers;
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(ServiceStartup.DEFAULT_PARALLELISM,
+                ServiceStartup.DEFAULT_PARALLELISM, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                daemonThreads("MMServiceCenter-lifecycle-", true));
+        EXECUTOR.allowCoreThreadTimeOut(true);
+
+        TIMER = new ScheduledThreadPoolExecutor(1, daemonThreads("MMServiceCenter-lifecycle-timer", false));
+
+        ThreadPoolExecutor broadcaster = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), daemonThreads("MMServiceCenter-lifecycle-broadcast", false));
+        broadcaster.allowCoreThreadTimeOut(true);
+        BROADCASTER = broadcaster;
+    }
+
+    private static ThreadFactory daemonThreads(final String name, final boolean numbered) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, numbered ? name + count.incrementAndGet() : name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private LifecycleBroadcast() {
+    }
+
+    /**
+     * 在调用线程上进行一次通知，所有回调返回或超时后返回。调用线程上的回调抛出异常时，等本组的并行回调结束或超时后抛出，
+     * 之后的组不再通知；并行回调的异常只打印日志
+     *
+     * @param services 通知开始时的Service快照
+     */
+    static void run(Event event, List<MMServiceInterface> services, long timeoutMillis) {
+        broadcast(event, services, timeoutMillis, null);
+    }
+
+    /**
+     * 在 {@link #BROADCASTER} 线程上进行一次通知，立即返回。非并行的Service在该线程上依次回调，
+     * 抛出异常的Service记录在返回的future中，之后的Service照常通知
+     *
+     * @param services 通知开始时的Service快照
+     */
+    static LifecycleFuture start(final Event event, final List<MMServiceInterface> services, final long timeoutMillis) {
+        final LifecycleFuture future = new LifecycleFuture();
+        BROADCASTER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    broadcast(event, services, timeoutMillis, future);
+                } finally {
+                    future.complete();
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @param future 异步通知的结果，同步通知时为null
+     */
+    private static void broadcast(Event event, List<MMServiceInterface> services, long timeoutMillis,
+                                  LifecycleFuture future) {
+        Map<Integer, List<MMServiceInterface>> byGroup = new TreeMap<>();
+        for (MMServiceInterface service : services) {
+            ServiceLifecycle lifecycle = service.getClass().getAnnotation(ServiceLifecycle.class);
+            int group = lifecycle != null ? lifecycle.group() : 0;
+            List<MMServiceInterface> members = byGroup.get(group);
+            if (members == null) {
+                members = new ArrayList<>();
+                byGroup.put(group, members);
+            }
+            members.add(service);
+        }
+        synchronized (LOCK) {
+            for (List<MMServiceInterface> members : byGroup.values()) {
+                runGroup(event, members, timeoutMillis, future);
+            }
+        }
+    }
+
+    private static void runGroup(Event event, List<MMServiceInterface> members, long timeoutMillis,
+                                 LifecycleFuture future) {
+        List<MMServiceInterface> parallel = new ArrayList<>();
+        List<MMServiceInterface> sequential = new ArrayList<>();
+        for (MMServiceInterface service : members) {
+            ServiceLifecycle lifecycle = service.getClass().getAnnotation(ServiceLifecycle.class);
+            if (lifecycle != null && lifecycle.parallel()) {
+                parallel.add(service);
+            } else {
+                sequential.add(service);
+            }
+        }
+
+        GroupRun group = parallel.isEmpty() ? null : new GroupRun(event, parallel, timeoutMillis, future);
+        try {
+            for (MMServiceInterface service : sequential) {
+                long started = System.nanoTime();
+                try {
+                    event.deliver(service);
+                } catch (RuntimeException e) {
+                    if (future == null) {
+                        throw e;
+                    }
+                    future.failed(service.getClass());
+                    MMServiceCenter.log(event + ":" + service + " failed", e);
+                } finally {
+                    MMServiceCenter.trace(service.getClass(), event.phase, started);
+                }
+            }
+        } finally {
+            if (group != null) {
+                group.await();
+            }
+        }
+    }
+
+    /**
+     * 超时仍在执行的回调占着线程，线程池为每个这样的回调多开一个线程，回调返回后收回
+     */
+    private static synchronized void resizePool(int delta) {
+        stuckWorkers += delta;
+        int size = ServiceStartup.DEFAULT_PARALLELISM + Math.max(0, stuckWorkers);
+        // 扩大时先调大上限，缩小时先调小核心数，始终保持core <= max
+        if (size > EXECUTOR.getMaximumPoolSize()) {
+            EXECUTOR.setMaximumPoolSize(size);
+            EXECUTOR.setCorePoolSize(size);
+        } else {
+            EXECUTOR.setCorePoolSize(size);
+            EXECUTOR.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * 一组并行回调，创建时提交到线程池并开始计时；run()在截止时间由TIMER执行，把未返回的回调记为超时
+     */
+    private static final class GroupRun implements Runnable {
+        final Event event;
+        final long timeoutMillis;
+        final LifecycleFuture future;
+        final List<Delivery> deliveries = new ArrayList<>();
+        final CountDownLatch left;
+        final long deadlineNanos;
+        final ScheduledFuture<?> timer;
+
+        GroupRun(Event event, List<MMServiceInterface> services, long timeoutMillis, LifecycleFuture future) {
+            this.event = event;
+            this.timeoutMillis = timeoutMillis;
+            this.future = future;
+            left = new CountDownLatch(services.size());
+            deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            for (MMServiceInterface service : services) {
+                deliveries.add(new Delivery(this, service));
+            }
+            timer = TIMER.schedule(this, timeoutMillis, TimeUnit.MILLISECONDS);
+            for (Delivery delivery : deliveries) {
+                EXECUTOR.execute(delivery);
+            }
+        }
+
+        /**
+         * 等到所有回调返回或截止时间，不会因为线程池排队而无限等待
+         */
+        void await() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    long remaining = deadlineNanos - System.nanoTime();
+                    try {
+                        if (remaining <= 0 || left.await(remaining, TimeUnit.NANOSECONDS)) {
+                            break;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                timer.cancel(false);
+                run();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (Delivery delivery : deliveries) {
+                delivery.expire();
+            }
+        }
+    }
+
+    /**
+     * 一个Service的并行回调
+     */
+    private static final class Delivery implements Runnable {
+        static final int PENDING = 0;
+        static final int RUNNING = 1;
+        static final int DONE = 2;
+        /** 开始执行前已超时，之后仍会执行 */
+        static final int EXPIRED = 3;
+        /** 执行中超时，返回时收回多开的线程 */
+        static final int STUCK = 4;
+
+        final GroupRun group;
+        final MMServiceInterface service;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+
+        Delivery(GroupRun group, MMServiceInterface service) {
+            this.group = group;
+            this.service = service;
+        }
+
+        @Override
+        public void run() {
+            boolean counted = state.compareAndSet(PENDING, RUNNING);
+            if (!counted) {
+                // 已超时的回调不占线程池的名额
+                resizePool(1);
+            }
+            Event event = group.event;
+            long started = System.nanoTime();
+            try {
+                event.deliver(service);
+            } catch (RuntimeException e) {
+                if (counted && group.future != null) {
+                    group.future.failed(service.getClass());
+                }
+                MMServiceCenter.log(event + ":" + service + " failed", e);
+            } finally {
+                MMServiceCenter.trace(service.getClass(), event.phase, started);
+                if (!counted || !state.compareAndSet(RUNNING, DONE)) {
+                    resizePool(-1);
+                } else {
+                    group.left.countDown();
+                }
+            }
+        }
+
+        void expire() {
+            boolean running = false;
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                running = state.compareAndSet(RUNNING, STUCK);
+                if (!running) {
+                    return;
+                }
+                resizePool(1);
+            }
+            if (group.future != null) {
+                group.future.timedOut(service.getClass());
+            }
+            MMServiceCenter.log(group.event + ":" + service + (running ? " did not return" : " did not start") + " in "
+                    + group.timeoutMillis + "ms", null);
+            group.left.countDown();
+        }
+    }
+}
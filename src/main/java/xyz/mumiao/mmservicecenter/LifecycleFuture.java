@@ -0,0 +1,68 @@
+package xyz.mumiao.mmservicecenter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次生命周期通知的完成情况，所有Service回调返回、抛出异常或超时后完成
+ */
+public final class LifecycleFuture {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<Class<?>> timedOut = Collections.synchronizedList(new ArrayList<Class<?>>());
+    private final List<Class<?>> failed = Collections.synchronizedList(new ArrayList<Class<?>>());
+
+    LifecycleFuture() {
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * 等待通知完成
+     */
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    /**
+     * @return 在timeout内完成时返回true
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * @return 超时未返回的Service，完成后不再变化
+     */
+    public List<Class<?>> getTimedOutServices() {
+        synchronized (timedOut) {
+            return new ArrayList<>(timedOut);
+        }
+    }
+
+    /**
+     * @return 回调抛出异常的Service
+     */
+    public List<Class<?>> getFailedServices() {
+        synchronized (failed) {
+            return new ArrayList<>(failed);
+        }
+    }
+
+    void timedOut(Class<?> cls) {
+        timedOut.add(cls);
+    }
+
+    void failed(Class<?> cls) {
+        failed.add(cls);
+    }
+
+    void complete() {
+        done.countDown();
+    }
+}
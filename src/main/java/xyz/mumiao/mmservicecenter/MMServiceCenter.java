@@ -4,11 +4,11 @@ import android.content.Context;
 import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 import android.util.Log;
 
@@ -18,15 +18,20 @@ import android.util.Log;
 public class MMServiceCenter {
     private static MMServiceCenter defaultServiceCenter;
     private static boolean isDebugMode = true;
-    private final ReentrantLock lock;
-    private HashMap<String, MMServiceInterface> hashMapService;
+    private static volatile long lifecycleTimeoutMillis = 5000;
+    private static volatile ServiceTraceSink traceSink;
+    /**
+     * 每个Service一个holder，已初始化的Service读取时不加锁；只有等待同一个Service初始化的线程会阻塞
+     */
+    private final ConcurrentMap<Class<?>, ServiceHolder> services;
+    private final ServiceWarmUp warmUp;
     private Context context;
 
     private MMServiceCenter()
     {
         log("MMServiceCenter init");
-        lock = new ReentrantLock();
-        hashMapService = new HashMap<>();
+        services = new ConcurrentHashMap<>();
+        warmUp = new ServiceWarmUp();
     }
 
     public static MMServiceCenter init(Context context)
@@ -44,39 +49,60 @@ public class MMServiceCenter {
         isDebugMode = isDebug;
     }
 
-    @Nullable
-    public static MMServiceCenter defaultServiceCenter()
+    /**
+     * 设置callEnterForeground等通知中每组并行回调（见 {@link ServiceLifecycle#parallel()}）的超时时间，
+     * 从回调提交到线程池时计时，超时的Service不再等待，默认5秒
+     */
+    public static void setLifecycleTimeout(long timeoutMillis)
     {
-        return defaultServiceCenter;
+        if (timeoutMillis <= 0)
+        {
+            throw new IllegalArgumentException("timeoutMillis must be positive: " + timeoutMillis);
+        }
+        lifecycleTimeoutMillis = timeoutMillis;
     }
 
-    public static <T extends MMServiceInterface> T getService(Class<T> cls)
+    /**
+     * 设置接收Service耗时记录的sink（构造、onServiceInit及各生命周期回调），传null关闭，关闭时只多一次判空
+     */
+    public static void setTraceSink(@Nullable ServiceTraceSink sink)
     {
-        defaultServiceCenter.lock.lock();
+        traceSink = sink;
+    }
 
-        T obj = (T) defaultServiceCenter.hashMapService.get(cls.getName());
-        if (obj == null)
+    /**
+     * 记录cls从started（System.nanoTime()）到现在在当前线程上的一次phase。sink抛出的异常只打印日志，
+     * 不会替换Service自身的异常
+     */
+    static void trace(Class<?> cls, ServiceTraceEvent.Phase phase, long started)
+    {
+        ServiceTraceSink sink = traceSink;
+        if (sink != null)
         {
+            Thread thread = Thread.currentThread();
             try {
-                obj = cls.newInstance();
-                log("getService:Create service object:" + obj);
-            } catch (InstantiationException e) {
-                log("getService:cls.newInstance()", e);
-            } catch (IllegalAccessException e)
-            {
-                log("getService:cls.newInstance()", e);
+                sink.onTrace(new ServiceTraceEvent(cls.getName(), phase, thread.getName(), thread.getId(), started,
+                        System.nanoTime() - started));
+            } catch (RuntimeException e) {
+                log("trace:" + phase + " of " + cls.getName() + " failed in sink " + sink, e);
             }
+        }
+    }
 
-            if (obj != null)
-            {
-                defaultServiceCenter.hashMapService.put(cls.getName(), obj);
-                obj.onServiceInit(defaultServiceCenter.context);
-            }
+    @Nullable
+    public static MMServiceCenter defaultServiceCenter()
+    {
+        return defaultServiceCenter;
+    }
 
+    public static <T extends MMServiceInterface> T getService(Class<T> cls)
+    {
+        ServiceHolder holder = defaultServiceCenter.services.get(cls);
+        if (holder != null && holder.initialized)
+        {
+            return cls.cast(holder.service);
         }
-        defaultServiceCenter.lock.unlock();
-
-        return obj;
+        return cls.cast(defaultServiceCenter.obtainService(cls, defaultServiceCenter.context));
     }
 
     /**
@@ -90,13 +116,102 @@ public class MMServiceCenter {
      */
     public static <T extends MMServiceInterface> void callInitService(Class<T> cls, Context context)
     {
-        defaultServiceCenter.lock.lock();
+        defaultServiceCenter.obtainService(cls, context != null ? context : defaultServiceCenter.context);
+    }
 
-        T obj = (T) defaultServiceCenter.hashMapService.get(cls.getName());
-        if (obj == null)
+    /**
+     * 启动时按依赖关系并行初始化一组Service，见 {@link ServiceStartup}
+     */
+    public static ServiceStartup startup()
+    {
+        return new ServiceStartup();
+    }
+
+    static MMServiceInterface initService(Class<? extends MMServiceInterface> cls)
+    {
+        return defaultServiceCenter.obtainService(cls, defaultServiceCenter.context);
+    }
+
+    static boolean isInitialized(Class<?> cls)
+    {
+        ServiceHolder holder = defaultServiceCenter.services.get(cls);
+        return holder != null && holder.initialized;
+    }
+
+    /**
+     * @return 创建并初始化cls的线程，Service不存在时返回null
+     */
+    static Thread initThreadOf(Class<?> cls)
+    {
+        ServiceHolder holder = defaultServiceCenter.services.get(cls);
+        return holder != null ? holder.initThread : null;
+    }
+
+    /**
+     * 按每个Service声明的 {@link ServiceInit} 安排初始化：EAGER立即初始化，AFTER_FIRST_FRAME在
+     * {@link #notifyFirstFrame()} 后由后台线程初始化，IDLE在主线程空闲时初始化，ON_DEMAND不预先初始化。
+     * 尚未轮到的Service被getService时立即初始化，不再排队等待
+     * @param classes
+     *        需要预先初始化的Service类，必须implements MMServiceInterface
+     */
+    public static void warmUp(Class<?>... classes)
+    {
+        for (Class<?> cls : classes)
         {
+            if (!MMServiceInterface.class.isAssignableFrom(cls))
+            {
+                throw new IllegalArgumentException("Service " + cls.getName() + " must implement MMServiceInterface.");
+            }
+        }
+        for (Class<?> cls : classes)
+        {
+            defaultServiceCenter.warmUp.schedule(cls.asSubclass(MMServiceInterface.class));
+        }
+    }
+
+    /**
+     * 首帧绘制完成后调用（例如第一个Activity的onWindowFocusChanged），开始初始化AFTER_FIRST_FRAME的Service
+     */
+    public static void notifyFirstFrame()
+    {
+        defaultServiceCenter.warmUp.notifyFirstFrame();
+    }
+
+    /**
+     * 返回cls的Service，不存在时创建并初始化。每个Service只初始化一次：其他线程等待初始化完成，
+     * 初始化线程在onServiceInit中再次获取该Service时直接返回（此时尚未初始化完成）。
+     * 构造或onServiceInit失败时不保留该Service，等待的线程得到null，之后的获取重新创建。
+     * 两个Service在不同线程上初始化、并在onServiceInit中互相获取时会互相等待，此时等待会形成环的线程
+     * 抛出IllegalStateException（该Service初始化失败）而不是死锁，应避免这种互相依赖
+     */
+    private MMServiceInterface obtainService(Class<? extends MMServiceInterface> cls, Context context)
+    {
+        ServiceHolder holder = services.get(cls);
+        if (holder == null)
+        {
+            ServiceHolder holderCreation = new ServiceHolder(cls);
+            holder = services.putIfAbsent(cls, holderCreation);
+            if (holder == null)
+            {
+                createService(cls, holderCreation, context);
+                return holderCreation.service;
+            }
+        }
+        return holder.await();
+    }
+
+    private void createService(Class<? extends MMServiceInterface> cls, ServiceHolder holder, Context context)
+    {
+        boolean created = false;
+        try {
+            MMServiceInterface obj = null;
+            long started = System.nanoTime();
             try {
-                obj = cls.newInstance();
+                try {
+                    obj = cls.newInstance();
+                } finally {
+                    trace(cls, ServiceTraceEvent.Phase.CONSTRUCT, started);
+                }
                 log("getService:Create service object:" + obj);
             } catch (InstantiationException e) {
                 log("getService:cls.newInstance()", e);
@@ -104,13 +219,28 @@ public class MMServiceCenter {
             {
                 log("getService:cls.newInstance()", e);
             }
-            if (obj != null)
+
+            if (obj == null)
             {
-                defaultServiceCenter.hashMapService.put(cls.getName(), obj);
-                obj.onServiceInit(context != null? context: defaultServiceCenter.context);
+                return;
             }
+            holder.service = obj;
+            started = System.nanoTime();
+            try {
+                obj.onServiceInit(context);
+            } finally {
+                trace(cls, ServiceTraceEvent.Phase.INIT, started);
+            }
+            created = true;
+        } finally {
+            if (!created)
+            {
+                // 不保留初始化失败的Service，等待的线程得到null
+                services.remove(cls, holder);
+                holder.service = null;
+            }
+            holder.initialized();
         }
-        defaultServiceCenter.lock.unlock();
     }
 
     /**
@@ -122,57 +252,51 @@ public class MMServiceCenter {
      */
     public static <T extends MMServiceInterface> void removeService(Class<T> cls)
     {
-        defaultServiceCenter.lock.lock();
+        ServiceHolder holder = defaultServiceCenter.services.remove(cls);
 
-        MMServiceInterface obj = defaultServiceCenter.hashMapService.get(cls.getName());
-
-        if (obj == null)
+        if (holder == null || holder.service == null)
         {
-            defaultServiceCenter.lock.unlock();
             return ;
         }
 
-        defaultServiceCenter.hashMapService.remove(cls.getName());
-
-        obj.getServiceState().isServiceRemoved = true;
-
-        defaultServiceCenter.lock.unlock();
+        holder.service.getServiceState().isServiceRemoved = true;
     }
 
     /**
-     * 程序后台转前台调用
+     * 程序后台转前台调用。通知发给调用时已初始化的Service，默认在调用线程上依次回调，所有回调返回或超时后返回；
+     * 按 {@link ServiceLifecycle#group()} 分组依次通知，声明了 {@link ServiceLifecycle#parallel()} 的Service在线程池中并行回调。
+     * 各个通知（包括 {@link #callTerminate()}）依次进行，不会交叠：例如callClearData之后调用callReloadData，
+     * onServiceReloadData都在所有onServiceClearData返回之后回调，只有超时后仍在执行的并行回调除外
      */
     public static void callEnterForeground()
     {
-        defaultServiceCenter.lock.lock();
-        Collection<MMServiceInterface> arrayCopy = defaultServiceCenter.hashMapService.values();
-        defaultServiceCenter.lock.unlock();
-
-        Iterator<MMServiceInterface> iterator = arrayCopy.iterator();
+        LifecycleBroadcast.run(LifecycleBroadcast.Event.ENTER_FOREGROUND, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
+    }
 
-        while (iterator.hasNext())
-        {
-            MMServiceInterface service = iterator.next();
-            service.onServiceEnterForeground();
-        }
+    /**
+     * {@link #callEnterForeground()} 的异步版本，立即返回；非并行的Service在通知线程上依次回调，而不是调用线程
+     * @return 所有Service回调完成或超时后完成，可获取超时和抛出异常的Service
+     */
+    public static LifecycleFuture callEnterForegroundAsync()
+    {
+        return LifecycleBroadcast.start(LifecycleBroadcast.Event.ENTER_FOREGROUND, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
     }
 
     /**
-     * 程序进入后台调用
+     * 程序进入后台调用，回调方式同 {@link #callEnterForeground()}
      */
     public static void callEnterBackground()
     {
-        defaultServiceCenter.lock.lock();
-        Collection<MMServiceInterface> arrayCopy = defaultServiceCenter.hashMapService.values();
-        defaultServiceCenter.lock.unlock();
-
-        Iterator<MMServiceInterface> iterator = arrayCopy.iterator();
+        LifecycleBroadcast.run(LifecycleBroadcast.Event.ENTER_BACKGROUND, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
+    }
 
-        while (iterator.hasNext())
-        {
-            MMServiceInterface service = iterator.next();
-            service.onServiceEnterBackground();
-        }
+    /**
+     * {@link #callEnterBackground()} 的异步版本，立即返回；非并行的Service在通知线程上依次回调，而不是调用线程
+     * @return 所有Service回调完成或超时后完成，可获取超时和抛出异常的Service
+     */
+    public static LifecycleFuture callEnterBackgroundAsync()
+    {
+        return LifecycleBroadcast.start(LifecycleBroadcast.Event.ENTER_BACKGROUND, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
     }
 
     /**
@@ -180,9 +304,15 @@ public class MMServiceCenter {
      */
     public static void callTerminate()
     {
-        defaultServiceCenter.lock.lock();
-        Collection<MMServiceInterface> arrayCopy = defaultServiceCenter.hashMapService.values();
-        defaultServiceCenter.lock.unlock();
+        synchronized (LifecycleBroadcast.LOCK)
+        {
+            terminateServices();
+        }
+    }
+
+    private static void terminateServices()
+    {
+        List<MMServiceInterface> arrayCopy = defaultServiceCenter.snapshotServices();
 
         Iterator<MMServiceInterface> iterator = arrayCopy.iterator();
 
@@ -190,7 +320,9 @@ public class MMServiceCenter {
         while (iterator.hasNext())
         {
             MMServiceInterface service = iterator.next();
+            long started = System.nanoTime();
             service.onServiceTerminate();
+            trace(service.getClass(), ServiceTraceEvent.Phase.TERMINATE, started);
             if (!service.getServiceState().isServicePersistent)
             {
                 // remove
@@ -203,35 +335,138 @@ public class MMServiceCenter {
         }
     }
 
+    /**
+     * 切换帐号后调用，回调方式同 {@link #callEnterForeground()}
+     */
     public static void callReloadData()
     {
-        defaultServiceCenter.lock.lock();
-        Collection<MMServiceInterface> arrayCopy = defaultServiceCenter.hashMapService.values();
-        defaultServiceCenter.lock.unlock();
-
-        Iterator<MMServiceInterface> iterator = arrayCopy.iterator();
+        LifecycleBroadcast.run(LifecycleBroadcast.Event.RELOAD_DATA, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
+    }
 
-        while (iterator.hasNext())
-        {
-            MMServiceInterface service = iterator.next();
-            service.onServiceReloadData();
-        }
+    /**
+     * {@link #callReloadData()} 的异步版本，立即返回；非并行的Service在通知线程上依次回调，而不是调用线程
+     * @return 所有Service回调完成或超时后完成，可获取超时和抛出异常的Service
+     */
+    public static LifecycleFuture callReloadDataAsync()
+    {
+        return LifecycleBroadcast.start(LifecycleBroadcast.Event.RELOAD_DATA, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
     }
 
     /**
      * 方法的会先调用每个Service的onServiceClearData方法
      * 如果该Service中的state.isServicePersistent==false，则之后会取消对该Service的持有
+     * 回调方式同 {@link #callEnterForeground()}
      */
     public static void callClearData()
     {
-        defaultServiceCenter.lock.lock();
-        Collection<MMServiceInterface> arrayCopy = defaultServiceCenter.hashMapService.values();
-        defaultServiceCenter.lock.unlock();
-        Iterator<MMServiceInterface> iterator = arrayCopy.iterator();
-        while (iterator.hasNext())
+        LifecycleBroadcast.run(LifecycleBroadcast.Event.CLEAR_DATA, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
+    }
+
+    /**
+     * {@link #callClearData()} 的异步版本，立即返回；非并行的Service在通知线程上依次回调，而不是调用线程
+     * @return 所有Service回调完成或超时后完成，可获取超时和抛出异常的Service
+     */
+    public static LifecycleFuture callClearDataAsync()
+    {
+        return LifecycleBroadcast.start(LifecycleBroadcast.Event.CLEAR_DATA, defaultServiceCenter.snapshotServices(), lifecycleTimeoutMillis);
+    }
+
+    /**
+     * 已初始化的Service的快照，遍历时Service可以被添加或移除
+     */
+    private List<MMServiceInterface> snapshotServices()
+    {
+        List<MMServiceInterface> snapshot = new ArrayList<>(services.size());
+        for (ServiceHolder holder : services.values())
         {
-            MMServiceInterface service = iterator.next();
-            service.onServiceClearData();
+            if (holder.initialized)
+            {
+                snapshot.add(holder.service);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 一个Service及其初始化状态，service在onServiceInit之前赋值，initialized在onServiceInit返回后置为true
+     */
+    private static final class ServiceHolder
+    {
+        /**
+         * 正在等待其他线程初始化Service的线程及其等待的holder，用于发现跨线程互相等待的环
+         */
+        private static final ConcurrentMap<Thread, ServiceHolder> waiting = new ConcurrentHashMap<>();
+
+        private final Class<?> cls;
+        private final Thread initThread = Thread.currentThread();
+        private final CountDownLatch initLatch = new CountDownLatch(1);
+        volatile MMServiceInterface service;
+        volatile boolean initialized;
+
+        ServiceHolder(Class<?> cls)
+        {
+            this.cls = cls;
+        }
+
+        void initialized()
+        {
+            initialized = true;
+            initLatch.countDown();
+        }
+
+        /**
+         * 等待初始化完成，创建失败时返回null；初始化线程自身不等待
+         *
+         * @throws IllegalStateException 等待会与其他初始化线程形成环
+         */
+        MMServiceInterface await()
+        {
+            Thread current = Thread.currentThread();
+            if (!initialized && current != initThread)
+            {
+                waiting.put(current, this);
+                boolean interrupted = false;
+                try {
+                    checkNoCycle(current);
+                    while (true)
+                    {
+                        try {
+                            initLatch.await();
+                            break;
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    waiting.remove(current);
+                    if (interrupted)
+                    {
+                        current.interrupt();
+                    }
+                }
+            }
+            return service;
+        }
+
+        /**
+         * 沿"初始化线程正在等待的Service"向下查找，回到current说明互相等待
+         */
+        private void checkNoCycle(Thread current)
+        {
+            StringBuilder cycle = new StringBuilder(current.getName());
+            ServiceHolder next = this;
+            // 每个线程最多等待一个holder，超过waiting的数量说明是其他线程之间的环
+            for (int steps = waiting.size(); next != null && !next.initialized && steps >= 0; steps--)
+            {
+                cycle.append(" -> ").append(next.cls.getName()).append(" (initializing on ")
+                        .append(next.initThread.getName()).append(')');
+                if (next.initThread == current)
+                {
+                    throw new IllegalStateException("getService cycle across threads: " + cycle
+                            + ", initialize these services on one thread");
+                }
+                next = waiting.get(next.initThread);
+            }
         }
     }
 
@@ -0,0 +1,22 @@
+package xyz.mumiao.mmservicecenter;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明Service的初始化时机：
+ * <pre>
+ * &#64;ServiceInit(InitPriority.IDLE)
+ * public class StatisticsService extends MMService { ... }
+ * </pre>
+ * 无论哪种时机，在此之前getService都会立即初始化该Service。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ServiceInit {
+    InitPriority value();
+}
@@ -0,0 +1,28 @@
+package xyz.mumiao.mmservicecenter;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明Service接收前后台切换、reloadData、clearData通知的方式。通知默认在调用线程上依次回调，
+ * group较小的组全部完成（或超时）后才通知下一组；未声明的Service属于group 0。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ServiceLifecycle {
+
+    /**
+     * 通知顺序的分组
+     */
+    int group() default 0;
+
+    /**
+     * 为true时在后台线程池中与同组的其他Service并行回调，回调超时后不再等待；
+     * 默认false，在调用通知的线程上回调。回调需要主线程或依赖调用线程的Service不要声明
+     */
+    boolean parallel() default false;
+}
@@ -0,0 +1,275 @@
+package xyz.mumiao.mmservicecenter;
+
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动时按依赖关系并行初始化一组Service，通过 {@link MMServiceCenter#startup()} 获取：
+ * <pre>
+ * MMServiceCenter.startup()
+ *         .add(AccountService.class)
+ *         .add(FeedService.class, AccountService.class)
+ *         .addOnMainThread(UiConfigService.class, AccountService.class)
+ *         .start();
+ * </pre>
+ * 一个Service在其依赖的Service都初始化完成后才初始化，没有依赖关系的Service在线程池中并行初始化；
+ * 用 {@link #addOnMainThread} 添加的Service在调用 {@link #start()} 的主线程上初始化。
+ * 初始化与 {@link MMServiceCenter#getService(Class)} 相同，已存在的Service不会再次初始化。
+ * <p>
+ * Service之间的依赖必须全部声明：onServiceInit中getService一个未声明为依赖的Service时，该Service在当前线程上立即初始化，
+ * 即使它是用 {@link #addOnMainThread} 添加的。轮到某个Service时如果发现它已在其他线程上被这样初始化，debug模式下打印日志。
+ */
+public final class ServiceStartup {
+
+    static final int DEFAULT_PARALLELISM = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** {@link #start()} 结束等待的标记 */
+    private static final Node FINISHED = new Node(MMServiceInterface.class, false);
+
+    private final Map<Class<?>, Node> nodes = new LinkedHashMap<>();
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    ServiceStartup() {
+    }
+
+    /**
+     * 添加在线程池中初始化的Service
+     *
+     * @param cls          需要初始化的Service类
+     * @param dependencies cls依赖的Service类，未添加的会自动添加为在线程池中初始化
+     */
+    public ServiceStartup add(Class<? extends MMServiceInterface> cls, Class<?>... dependencies) {
+        return add(cls, false, dependencies);
+    }
+
+    /**
+     * 添加必须在主线程初始化的Service，例如初始化时需要创建View或Handler
+     *
+     * @param cls          需要初始化的Service类
+     * @param dependencies cls依赖的Service类
+     */
+    public ServiceStartup addOnMainThread(Class<? extends MMServiceInterface> cls, Class<?>... dependencies) {
+        return add(cls, true, dependencies);
+    }
+
+    /**
+     * @param parallelism 线程池最多同时初始化的Service数量
+     */
+    public ServiceStartup parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    private ServiceStartup add(Class<? extends MMServiceInterface> cls, boolean mainThread, Class<?>... dependencies) {
+        Node node = nodes.get(cls);
+        if (node != null && node.declared) {
+            throw new IllegalArgumentException("Service " + cls.getName() + " was already added.");
+        }
+        if (node == null) {
+            node = new Node(cls, mainThread);
+            nodes.put(cls, node);
+        }
+        node.mainThread = mainThread;
+        node.declared = true;
+        for (Class<?> dependency : dependencies) {
+            if (!MMServiceInterface.class.isAssignableFrom(dependency)) {
+                throw new IllegalArgumentException("Dependency " + dependency.getName() + " of " + cls.getName()
+                        + " must implement MMServiceInterface.");
+            }
+            Node dependencyNode = nodes.get(dependency);
+            if (dependencyNode == null) {
+                dependencyNode = new Node(dependency.asSubclass(MMServiceInterface.class), false);
+                nodes.put(dependency, dependencyNode);
+            }
+            node.dependencies.add(dependencyNode);
+            dependencyNode.dependents.add(node);
+        }
+        return this;
+    }
+
+    /**
+     * 初始化所有添加的Service，全部完成后返回。有 {@link #addOnMainThread} 添加的Service时必须在主线程调用。
+     * 某个Service初始化抛出异常或无法创建时，其余Service（包括依赖它的）照常初始化，最后抛出第一个异常。
+     *
+     * @throws IllegalArgumentException 依赖关系有环
+     * @throws IllegalStateException    某个Service无法创建，例如没有public无参构造函数
+     */
+    public void start() {
+        boolean needsMainThread = false;
+        for (Node node : nodes.values()) {
+            checkAcyclic(node, new ArrayList<Node>());
+            needsMainThread |= node.mainThread;
+        }
+        if (needsMainThread && Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("services added with addOnMainThread must be started on the main thread");
+        }
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        final Run run = new Run(nodes.size(), parallelism);
+        for (Node node : nodes.values()) {
+            node.remaining.set(node.dependencies.size());
+            node.initializedBefore = MMServiceCenter.isInitialized(node.cls);
+        }
+        for (Node node : nodes.values()) {
+            if (node.dependencies.isEmpty()) {
+                run.schedule(node);
+            }
+        }
+
+        // the calling thread initializes the main-thread services as they become ready
+        try {
+            while (true) {
+                Node node = takeUninterruptibly(run.mainThreadReady);
+                if (node == FINISHED) {
+                    break;
+                }
+                run.initialize(node);
+            }
+        } finally {
+            run.pool.shutdown();
+        }
+        if (run.failure != null) {
+            throw run.failure;
+        }
+    }
+
+    private static void checkAcyclic(Node node, List<Node> path) {
+        if (node.acyclic) {
+            return;
+        }
+        int index = path.indexOf(node);
+        if (index >= 0) {
+            StringBuilder cycle = new StringBuilder();
+            for (Node step : path.subList(index, path.size())) {
+                cycle.append(step.cls.getName()).append(" -> ");
+            }
+            throw new IllegalArgumentException("Service dependency cycle: " + cycle.append(node.cls.getName()));
+        }
+        path.add(node);
+        for (Node dependency : node.dependencies) {
+            checkAcyclic(dependency, path);
+        }
+        path.remove(path.size() - 1);
+        node.acyclic = true;
+    }
+
+    private static Node takeUninterruptibly(BlockingQueue<Node> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 一次 {@link #start()} 的执行状态
+     */
+    private static final class Run {
+        final BlockingQueue<Node> mainThreadReady = new LinkedBlockingQueue<>();
+        final CountDownLatch left;
+        final ThreadPoolExecutor pool;
+        volatile RuntimeException failure;
+
+        Run(int count, int parallelism) {
+            left = new CountDownLatch(count);
+            pool = new ThreadPoolExecutor(parallelism, parallelism, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "MMServiceCenter-init-" + count.incrementAndGet());
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        void schedule(final Node node) {
+            if (node.mainThread) {
+                mainThreadReady.offer(node);
+            } else {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        initialize(node);
+                    }
+                });
+            }
+        }
+
+        void initialize(Node node) {
+            try {
+                if (MMServiceCenter.initService(node.cls) == null) {
+                    throw new IllegalStateException("Service " + node.cls.getName() + " could not be created");
+                }
+                Thread initThread = MMServiceCenter.initThreadOf(node.cls);
+                if (!node.initializedBefore && initThread != null && initThread != Thread.currentThread()) {
+                    MMServiceCenter.log("startup:" + node.cls.getName() + " was initialized on " + initThread.getName()
+                            + " before its turn, probably by getService in another service's onServiceInit;"
+                            + " declare it as a dependency of that service");
+                }
+            } catch (RuntimeException e) {
+                MMServiceCenter.log("startup:init " + node.cls.getName() + " failed", e);
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            } finally {
+                for (Node dependent : node.dependents) {
+                    if (dependent.remaining.decrementAndGet() == 0) {
+                        schedule(dependent);
+                    }
+                }
+                left.countDown();
+                if (left.getCount() == 0) {
+                    mainThreadReady.offer(FINISHED);
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+        final Class<? extends MMServiceInterface> cls;
+        final List<Node> dependencies = new ArrayList<>();
+        final List<Node> dependents = new ArrayList<>();
+        /** 未初始化完成的依赖数量 */
+        final AtomicInteger remaining = new AtomicInteger();
+        boolean mainThread;
+        /** 通过add添加，而不是仅作为依赖出现 */
+        boolean declared;
+        boolean acyclic;
+        /** start之前已初始化，不是被未声明的依赖提前初始化的 */
+        boolean initializedBefore;
+
+        Node(Class<? extends MMServiceInterface> cls, boolean mainThread) {
+            this.cls = cls;
+            this.mainThread = mainThread;
+        }
+    }
+}
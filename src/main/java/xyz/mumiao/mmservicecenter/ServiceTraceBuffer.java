@@ -0,0 +1,110 @@
+package xyz.mumiao.mmservicecenter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保存最近 {@code capacity} 条记录的环形缓冲区，可以导出为Chrome trace JSON，在 chrome://tracing 或 Perfetto
+ * 中查看启动、切换帐号时各Service在各线程上的时间线：
+ * <pre>
+ * ServiceTraceBuffer trace = new ServiceTraceBuffer(1024);
+ * MMServiceCenter.setTraceSink(trace);
+ * ...
+ * trace.writeChromeTrace(new FileWriter(file));
+ * </pre>
+ */
+public final class ServiceTraceBuffer implements ServiceTraceSink {
+
+    private final ServiceTraceEvent[] events;
+    /** 记录过的总条数，下一条写入 {@code count % events.length} */
+    private long count;
+
+    public ServiceTraceBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        events = new ServiceTraceEvent[capacity];
+    }
+
+    @Override
+    public synchronized void onTrace(ServiceTraceEvent event) {
+        events[(int) (count % events.length)] = event;
+        count++;
+    }
+
+    /**
+     * @return 缓冲区中的记录，从旧到新
+     */
+    public synchronized List<ServiceTraceEvent> snapshot() {
+        int size = (int) Math.min(count, events.length);
+        List<ServiceTraceEvent> snapshot = new ArrayList<>(size);
+        for (long i = count - size; i < count; i++) {
+            snapshot.add(events[(int) (i % events.length)]);
+        }
+        return snapshot;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < events.length; i++) {
+            events[i] = null;
+        }
+        count = 0;
+    }
+
+    /**
+     * 以Chrome trace事件格式（完整事件"X"，时间单位微秒）写出缓冲区中的记录，不关闭writer
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        writer.write(toChromeTrace());
+        writer.flush();
+    }
+
+    public String toChromeTrace() {
+        List<ServiceTraceEvent> snapshot = snapshot();
+        StringBuilder json = new StringBuilder("{\"traceEvents\":[");
+        Map<Long, String> threads = new LinkedHashMap<>();
+        boolean first = true;
+        for (ServiceTraceEvent event : snapshot) {
+            threads.put(event.threadId, event.threadName);
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"name\":");
+            appendString(json, event.serviceName);
+            json.append(",\"cat\":\"").append(event.phase).append('"')
+                    .append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(event.threadId)
+                    .append(",\"ts\":").append(event.startNanos / 1000)
+                    .append(",\"dur\":").append(event.durationNanos / 1000)
+                    .append(",\"args\":{\"phase\":\"").append(event.phase).append("\"}}");
+        }
+        // name the timeline rows after the threads
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(thread.getKey())
+                    .append(",\"args\":{\"name\":");
+            appendString(json, thread.getValue());
+            json.append("}}");
+        }
+        return json.append("],\"displayTimeUnit\":\"ms\"}").toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c);
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,40 @@
+package xyz.mumiao.mmservicecenter;
+
+/**
+ * 一个Service的一次创建、初始化或生命周期回调的耗时记录，见 {@link MMServiceCenter#setTraceSink(ServiceTraceSink)}
+ */
+public final class ServiceTraceEvent {
+
+    public enum Phase {
+        /** 构造函数（newInstance） */
+        CONSTRUCT,
+        INIT,
+        ENTER_FOREGROUND,
+        ENTER_BACKGROUND,
+        RELOAD_DATA,
+        CLEAR_DATA,
+        TERMINATE
+    }
+
+    public final String serviceName;
+    public final Phase phase;
+    public final String threadName;
+    public final long threadId;
+    /** 开始时间，{@link System#nanoTime()} */
+    public final long startNanos;
+    public final long durationNanos;
+
+    ServiceTraceEvent(String serviceName, Phase phase, String threadName, long threadId, long startNanos, long durationNanos) {
+        this.serviceName = serviceName;
+        this.phase = phase;
+        this.threadName = threadName;
+        this.threadId = threadId;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return serviceName + " " + phase + " " + durationNanos / 1000 + "us on " + threadName;
+    }
+}
@@ -0,0 +1,8 @@
+package xyz.mumiao.mmservicecenter;
+
+/**
+ * 接收Service的耗时记录，在被记录的线程上调用，应当尽快返回；{@link ServiceTraceBuffer} 是保存在内存中的实现
+ */
+public interface ServiceTraceSink {
+    void onTrace(ServiceTraceEvent event);
+}
@@ -0,0 +1,155 @@
+package xyz.mumiao.mmservicecenter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 {@link InitPriority} 延后初始化的Service：首帧后的交给后台线程，空闲时的由主线程IdleHandler逐个初始化。
+ * 排队中的Service被提前getService时会立即初始化，轮到它时已存在，直接跳过。
+ */
+final class ServiceWarmUp implements MessageQueue.IdleHandler {
+
+    /**
+     * 首帧后初始化Service的后台线程，空闲时停止
+     */
+    static final ExecutorService EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MMServiceCenter-warmup");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private final ConcurrentLinkedQueue<Class<? extends MMServiceInterface>> idle = new ConcurrentLinkedQueue<>();
+    /** 首帧前排队的Service，首帧后为null */
+    private List<Class<? extends MMServiceInterface>> afterFirstFrame = new ArrayList<>();
+    private boolean idleHandlerAdded;
+    private Handler mainHandler;
+
+    static InitPriority priorityOf(Class<?> cls) {
+        ServiceInit serviceInit = cls.getAnnotation(ServiceInit.class);
+        return serviceInit != null ? serviceInit.value() : InitPriority.EAGER;
+    }
+
+    void schedule(Class<? extends MMServiceInterface> cls) {
+        switch (priorityOf(cls)) {
+            case EAGER:
+                MMServiceCenter.initService(cls);
+                break;
+            case AFTER_FIRST_FRAME:
+                synchronized (this) {
+                    if (afterFirstFrame != null) {
+                        afterFirstFrame.add(cls);
+                        break;
+                    }
+                }
+                execute(cls);
+                break;
+            case IDLE:
+                idle.offer(cls);
+                addIdleHandler();
+                break;
+            default:
+                // ON_DEMAND: created by the first getService
+        }
+    }
+
+    void notifyFirstFrame() {
+        List<Class<? extends MMServiceInterface>> queued;
+        synchronized (this) {
+            queued = afterFirstFrame;
+            afterFirstFrame = null;
+        }
+        if (queued != null) {
+            for (Class<? extends MMServiceInterface> cls : queued) {
+                execute(cls);
+            }
+        }
+    }
+
+    private void execute(final Class<? extends MMServiceInterface> cls) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                warmUp(cls);
+            }
+        });
+    }
+
+    private void addIdleHandler() {
+        synchronized (this) {
+            if (idleHandlerAdded) {
+                return;
+            }
+            idleHandlerAdded = true;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Looper.myQueue().addIdleHandler(this);
+        } else {
+            mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    Looper.myQueue().addIdleHandler(ServiceWarmUp.this);
+                }
+            });
+        }
+    }
+
+    /**
+     * 主线程空闲时初始化一个Service，还有排队的Service时保留IdleHandler
+     */
+    @Override
+    public boolean queueIdle() {
+        Class<? extends MMServiceInterface> cls;
+        // skip services a getService already created
+        do {
+            cls = idle.poll();
+        } while (cls != null && MMServiceCenter.isInitialized(cls));
+        if (cls != null) {
+            warmUp(cls);
+        }
+        synchronized (this) {
+            if (idle.isEmpty()) {
+                idleHandlerAdded = false;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private void warmUp(Class<? extends MMServiceInterface> cls) {
+        if (MMServiceCenter.isInitialized(cls)) {
+            return;
+        }
+        try {
+            MMServiceCenter.initService(cls);
+        } catch (RuntimeException e) {
+            MMServiceCenter.log("warmUp:init " + cls.getName() + " failed", e);
+        }
+    }
+
+    private synchronized Handler mainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+}
@@ -0,0 +1,178 @@
+package xyz.mumiao.mmbus;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Handlers of a {@link Coalesce} interface only receive the events their {@link CoalescePolicy} keeps, on the thread
+ * of their {@link ThreadMode}.
+ */
+public class CoalesceTest {
+
+    private static final long WINDOW_MILLIS = 100;
+
+    @Coalesce(CoalescePolicy.LATEST)
+    public interface LatestListener {
+        void onProgress(String progress);
+    }
+
+    @Coalesce(CoalescePolicy.LATEST)
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public interface BackgroundLatestListener {
+        void onProgress(String progress);
+    }
+
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public interface BlockingListener {
+        void onBlock(CountDownLatch release);
+    }
+
+    @Coalesce(value = CoalescePolicy.DEBOUNCE, windowMillis = WINDOW_MILLIS)
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public interface DebounceListener {
+        void onQuery(String query);
+    }
+
+    @Coalesce(value = CoalescePolicy.THROTTLE, windowMillis = WINDOW_MILLIS)
+    public interface ThrottleListener {
+        void onScroll(String position);
+    }
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void latestKeepsTheNewestEventOfABatch() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "coalesce");
+        final List<String> received = new ArrayList<String>();
+        bus.register(LatestListener.class, new LatestListener() {
+            @Override
+            public void onProgress(String progress) {
+                received.add(progress);
+            }
+        });
+
+        bus.postAll(LatestListener.class, Arrays.asList("10%", "20%", "30%"));
+        bus.post(LatestListener.class, "40%");
+
+        assertEquals(Arrays.asList("30%", "40%"), received);
+    }
+
+    @Test
+    public void latestReplacesTheDeliveryWaitingForTheHandlerThread() throws InterruptedException {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "coalesce");
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        bus.register(BlockingListener.class, new BlockingListener() {
+            @Override
+            public void onBlock(CountDownLatch release) {
+                blocking.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        bus.register(BackgroundLatestListener.class, new BackgroundLatestListener() {
+            @Override
+            public void onProgress(String progress) {
+                received.add(progress);
+                delivered.countDown();
+            }
+        });
+
+        bus.post(BlockingListener.class, release);
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            bus.post(BackgroundLatestListener.class, i * 10 + "%");
+        }
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(Collections.singletonList("100%"), received);
+    }
+
+    @Test
+    public void debounceDeliversTheLastEventOnTheHandlerThread() throws InterruptedException {
+        // timers of posts made on the main thread run on its looper, which does not run in unit tests
+        assumeTrue(Looper.getMainLooper() != null);
+        final MMBus bus = new MMBus(ThreadEnforcer.ANY, "coalesce");
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch delivered = new CountDownLatch(1);
+        bus.register(DebounceListener.class, new DebounceListener() {
+            @Override
+            public void onQuery(String query) {
+                received.add(query);
+                threads.add(Thread.currentThread().getName());
+                delivered.countDown();
+            }
+        });
+
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (String query : new String[]{"m", "mm", "mmb", "mmbus"}) {
+                    bus.post(DebounceListener.class, query);
+                }
+            }
+        });
+        worker.start();
+        worker.join(5000);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(2 * WINDOW_MILLIS);
+        assertEquals(Collections.singletonList("mmbus"), received);
+        assertEquals(Collections.singletonList("MMBus-background"), threads);
+    }
+
+    @Test
+    public void throttleDeliversTheFirstEventAndTheLastOfTheWindow() throws InterruptedException {
+        assumeTrue(Looper.getMainLooper() != null);
+        final MMBus bus = new MMBus(ThreadEnforcer.ANY, "coalesce");
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch delivered = new CountDownLatch(2);
+        bus.register(ThrottleListener.class, new ThrottleListener() {
+            @Override
+            public void onScroll(String position) {
+                received.add(position);
+                delivered.countDown();
+            }
+        });
+
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 5; i++) {
+                    bus.post(ThrottleListener.class, "y" + i);
+                }
+            }
+        });
+        worker.start();
+        worker.join(5000);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(2 * WINDOW_MILLIS);
+        assertEquals(Arrays.asList("y1", "y5"), received);
+    }
+}
@@ -0,0 +1,88 @@
+package xyz.mumiao.mmbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Posts that reach no handler are reported once per signature, counted, and kept in a bounded set.
+ */
+public class DeadEventTest {
+
+    public interface Listener {
+        void onEvent(String event);
+    }
+
+    public interface StrictListener {
+        void onMessage(String message);
+    }
+
+    @Test
+    public void firstDeadPostOfASignatureIsReportedOnce() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "dead");
+        final List<DeadEvent> reported = new ArrayList<DeadEvent>();
+        bus.setDeadEventListener(new DeadEvent.Listener() {
+            @Override
+            public void onDeadEvent(DeadEvent deadEvent) {
+                reported.add(deadEvent);
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            bus.post(Listener.class, "event");
+        }
+
+        assertEquals(1, reported.size());
+        DeadEvent deadEvent = reported.get(0);
+        assertEquals(Listener.class, deadEvent.getKeyClass());
+        assertTrue(deadEvent.isSignatureDeclared());
+        assertEquals(3, deadEvent.getCount());
+        assertEquals(1, bus.getDeadEvents().size());
+    }
+
+    @Test
+    public void postReachingAHandlerIsNotDead() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "dead");
+        bus.register(Listener.class, new Listener() {
+            @Override
+            public void onEvent(String event) {
+            }
+        });
+
+        bus.post(Listener.class, "event");
+
+        assertTrue(bus.getDeadEvents().isEmpty());
+    }
+
+    @Test
+    public void wrongMethodNameIsAnUndeclaredSignature() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "dead", new StrictHandlerFindler());
+        bus.register(StrictListener.class, new StrictListener() {
+            @Override
+            public void onMessage(String message) {
+            }
+        });
+
+        bus.post(StrictListener.class, "onMesage", "message");
+
+        List<DeadEvent> deadEvents = bus.getDeadEvents();
+        assertEquals(1, deadEvents.size());
+        assertEquals("onMesage", deadEvents.get(0).getMethodName());
+        assertFalse(deadEvents.get(0).isSignatureDeclared());
+    }
+
+    @Test
+    public void deadSignaturesStayBounded() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "dead", new StrictHandlerFindler());
+
+        for (int i = 0; i < 4 * MMBus.MAX_DEAD_EVENTS; i++) {
+            bus.post(StrictListener.class, "onMessage" + i, "message");
+            assertTrue(bus.getDeadEvents().size() <= MMBus.MAX_DEAD_EVENTS);
+        }
+    }
+}
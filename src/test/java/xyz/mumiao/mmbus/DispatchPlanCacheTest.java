@@ -0,0 +1,193 @@
+package xyz.mumiao.mmbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cached dispatch plans follow registrations made after they were built, and the strict plan cache stays bounded.
+ */
+public class DispatchPlanCacheTest {
+
+    public interface Listener {
+        void onEvent(String event);
+    }
+
+    public interface OtherListener {
+        void onOtherEvent(String event);
+    }
+
+    private static class BothListener implements Listener, OtherListener {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void onEvent(String event) {
+            log.add("event:" + event);
+        }
+
+        @Override
+        public void onOtherEvent(String event) {
+            log.add("other:" + event);
+        }
+    }
+
+    public interface StrictListener {
+        void onMessage(String message, Integer count);
+    }
+
+    private static class RecordingListener implements Listener {
+        final String name;
+        final List<String> log;
+
+        RecordingListener(String name, List<String> log) {
+            this.name = name;
+            this.log = log;
+        }
+
+        @Override
+        public void onEvent(String event) {
+            log.add(name + ":" + event);
+        }
+    }
+
+    @Test
+    public void handlerRegisteredAfterPostIsReached() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "plans");
+        List<String> log = new ArrayList<String>();
+        bus.register(Listener.class, new RecordingListener("first", log));
+        bus.post(Listener.class, "a");
+
+        bus.register(Listener.class, new RecordingListener("second", log));
+        bus.post(Listener.class, "b");
+
+        assertEquals(Arrays.asList("first:a", "first:b", "second:b"), log);
+    }
+
+    @Test
+    public void handlerUnregisteredAfterPostIsNotReached() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "plans");
+        List<String> log = new ArrayList<String>();
+        RecordingListener first = new RecordingListener("first", log);
+        bus.register(Listener.class, first);
+        bus.register(Listener.class, new RecordingListener("second", log));
+        bus.post(Listener.class, "a");
+
+        bus.unregister(Listener.class, first);
+        bus.post(Listener.class, "b");
+
+        assertEquals(Arrays.asList("first:a", "second:a", "second:b"), log);
+    }
+
+    @Test
+    public void bulkRegistrationOnAnotherThreadIsSeenByTheNextPost() throws InterruptedException {
+        final MMBus bus = new MMBus(ThreadEnforcer.ANY, "plans");
+        final BothListener listener = new BothListener();
+        // cache plans without handlers
+        bus.post(Listener.class, "a");
+        bus.post(OtherListener.class, "a");
+
+        Thread registering = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bus.registerAll(listener, Listener.class, OtherListener.class);
+            }
+        });
+        registering.start();
+        registering.join();
+        bus.post(Listener.class, "b");
+        bus.post(OtherListener.class, "b");
+
+        Thread unregistering = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bus.unregisterAll(listener, Listener.class, OtherListener.class);
+            }
+        });
+        unregistering.start();
+        unregistering.join();
+        bus.post(Listener.class, "c");
+        bus.post(OtherListener.class, "c");
+
+        assertEquals(Arrays.asList("event:b", "other:b"), listener.log);
+    }
+
+    @Test
+    public void postsRacingRegistrationsEndWithTheLastRegistry() throws InterruptedException {
+        final MMBus bus = new MMBus(ThreadEnforcer.ANY, "plans");
+        final BothListener listener = new BothListener();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread posting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    bus.post(Listener.class, "racing");
+                }
+            }
+        });
+        posting.start();
+        for (int i = 0; i < 2000; i++) {
+            bus.registerAll(listener, Listener.class, OtherListener.class);
+            bus.unregisterAll(listener, Listener.class, OtherListener.class);
+        }
+        done.set(true);
+        posting.join();
+
+        listener.log.clear();
+        bus.post(Listener.class, "after");
+        assertEquals(Collections.<String>emptyList(), listener.log);
+        bus.registerAll(listener, Listener.class, OtherListener.class);
+        bus.post(Listener.class, "registered");
+        assertEquals(Collections.singletonList("event:registered"), listener.log);
+    }
+
+    @Test
+    public void strictPostsOfOneSignatureHitOneEntry() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "strict", new StrictHandlerFindler());
+        final int[] received = new int[1];
+        bus.register(StrictListener.class, new StrictListener() {
+            @Override
+            public void onMessage(String message, Integer count) {
+                received[0]++;
+            }
+        });
+
+        bus.post(StrictListener.class, "onMessage", "warm up", 0);
+        int size = bus.strictDispatchPlanCache.size();
+        long hits = bus.strictDispatchPlanCache.hitCount();
+        long misses = bus.strictDispatchPlanCache.missCount();
+        for (int i = 0; i < 1000; i++) {
+            bus.post(StrictListener.class, "onMessage", "message", i);
+        }
+
+        assertEquals(1001, received[0]);
+        assertEquals(size, bus.strictDispatchPlanCache.size());
+        assertEquals(hits + 1000, bus.strictDispatchPlanCache.hitCount());
+        assertEquals(misses, bus.strictDispatchPlanCache.missCount());
+    }
+
+    @Test
+    public void strictPlanCacheEvictsPastMaxSignatures() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "strict", new StrictHandlerFindler());
+        bus.register(StrictListener.class, new StrictListener() {
+            @Override
+            public void onMessage(String message, Integer count) {
+            }
+        });
+
+        // every method name is a new signature, even without a handler
+        int signatures = 2 * MMBus.MAX_STRICT_SIGNATURES;
+        for (int i = 0; i < signatures; i++) {
+            bus.post(StrictListener.class, "onMessage" + i, "message", i);
+            assertTrue("cached signatures after " + (i + 1) + " posts: " + bus.strictDispatchPlanCache.size(),
+                    bus.strictDispatchPlanCache.size() <= MMBus.MAX_STRICT_SIGNATURES);
+        }
+        assertEquals(signatures, bus.strictDispatchPlanCache.missCount());
+    }
+}
@@ -0,0 +1,170 @@
+package xyz.mumiao.mmbus;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * A bounded queue applies its {@link OverflowPolicy} to posts that find it full, and the {@link ThreadMode#MAIN}
+ * limit also bounds the posts of {@link MMBus#postFromAnyThread} waiting for the main looper.
+ */
+public class OverflowPolicyTest {
+
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public interface BackgroundListener {
+        void onEvent(String event);
+    }
+
+    public interface Listener {
+        void onEvent(String event);
+    }
+
+    private MMBus bus;
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch blocking = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        bus = new MMBus(ThreadEnforcer.ANY, "overflow");
+        bus.register(BackgroundListener.class, new BackgroundListener() {
+            @Override
+            public void onEvent(String event) {
+                events.add(event);
+                if (event.equals("block")) {
+                    blocking.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    /**
+     * Posts an event that holds the background thread, so the next posts stay queued.
+     */
+    private void blockBackgroundThread() throws InterruptedException {
+        bus.post(BackgroundListener.class, "block");
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+    }
+
+    private void postAll(String... posted) {
+        for (String event : posted) {
+            bus.post(BackgroundListener.class, event);
+        }
+    }
+
+    /**
+     * Lets the background thread go and waits until it delivered {@code expected}.
+     */
+    private void assertDelivered(List<String> expected) throws InterruptedException {
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (events.size() < expected.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // nothing more arrives
+        Thread.sleep(50);
+        assertEquals(expected, new ArrayList<String>(events));
+    }
+
+    @Test
+    public void dropNewestDiscardsPostsFindingTheQueueFull() throws InterruptedException {
+        bus.setQueueLimit(ThreadMode.BACKGROUND, 2, OverflowPolicy.DROP_NEWEST);
+        blockBackgroundThread();
+        postAll("a", "b", "c", "d");
+
+        assertDelivered(Arrays.asList("block", "a", "b"));
+        assertEquals(2, bus.getDroppedEvents(ThreadMode.BACKGROUND));
+    }
+
+    @Test
+    public void dropOldestMakesRoomForNewPosts() throws InterruptedException {
+        bus.setQueueLimit(ThreadMode.BACKGROUND, 2, OverflowPolicy.DROP_OLDEST);
+        blockBackgroundThread();
+        postAll("a", "b", "c", "d");
+
+        assertDelivered(Arrays.asList("block", "c", "d"));
+        assertEquals(2, bus.getDroppedEvents(ThreadMode.BACKGROUND));
+    }
+
+    @Test
+    public void coalesceReplacesTheQueuedDeliveryOfTheHandler() throws InterruptedException {
+        bus.setQueueLimit(ThreadMode.BACKGROUND, 1, OverflowPolicy.COALESCE);
+        blockBackgroundThread();
+        postAll("a", "b", "c");
+
+        assertDelivered(Arrays.asList("block", "c"));
+        assertEquals(2, bus.getDroppedEvents(ThreadMode.BACKGROUND));
+    }
+
+    @Test
+    public void blockWaitsForRoom() throws InterruptedException {
+        bus.setQueueLimit(ThreadMode.BACKGROUND, 1, OverflowPolicy.BLOCK);
+        blockBackgroundThread();
+        postAll("a");
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bus.post(BackgroundListener.class, "b");
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue("producer did not wait for room", producer.isAlive());
+        assertEquals(1, bus.getDelayedEvents(ThreadMode.BACKGROUND));
+
+        assertDelivered(Arrays.asList("block", "a", "b"));
+        producer.join(5000);
+        assertEquals(0, bus.getDroppedEvents(ThreadMode.BACKGROUND));
+    }
+
+    @Test
+    public void mainLimitBoundsPostsFromOtherThreads() throws InterruptedException {
+        assumeTrue(Looper.getMainLooper() != null && Looper.myLooper() == Looper.getMainLooper());
+        final List<String> received = new ArrayList<String>();
+        bus.register(Listener.class, new Listener() {
+            @Override
+            public void onEvent(String event) {
+                received.add(event);
+            }
+        });
+        bus.setQueueLimit(ThreadMode.MAIN, 2, OverflowPolicy.DROP_OLDEST);
+
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    bus.postFromAnyThread(Listener.class, "event" + i);
+                }
+            }
+        });
+        worker.start();
+        worker.join(5000);
+        bus.crossThreadPosts.handleMessage(null);
+
+        assertEquals(Arrays.asList("event3", "event4"), received);
+        assertEquals(3, bus.getDroppedEvents(ThreadMode.MAIN));
+    }
+}
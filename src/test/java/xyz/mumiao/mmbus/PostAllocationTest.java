@@ -0,0 +1,146 @@
+package xyz.mumiao.mmbus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Posting to handlers that are already registered reuses the thread's dispatch context and the cached dispatch plan,
+ * so once warmed up it must not allocate. Strict posts look their plan up with the thread's probe key; their argument
+ * array is built by the caller and reused here.
+ */
+public class PostAllocationTest {
+
+    private static final int WARM_UP_POSTS = 20000;
+    private static final int MEASURED_POSTS = 10000;
+    private static final int MAX_ROUNDS = 3;
+
+    public static class Event {
+    }
+
+    public static class SubEvent extends Event {
+    }
+
+    public interface Listener {
+        void onEvent(Event event);
+
+        void onSubEvent(SubEvent event);
+    }
+
+    public interface StrictListener {
+        void onMessage(Event event, Integer count);
+    }
+
+    private static class CountingStrictListener implements StrictListener {
+        int messages;
+
+        @Override
+        public void onMessage(Event event, Integer count) {
+            messages++;
+        }
+    }
+
+    private static class CountingListener implements Listener {
+        int events;
+
+        @Override
+        public void onEvent(Event event) {
+            events++;
+        }
+
+        @Override
+        public void onSubEvent(SubEvent event) {
+            events++;
+        }
+    }
+
+    private com.sun.management.ThreadMXBean threads;
+    /** Posts made by {@link #allocatedBy(Runnable)}. */
+    private int measuredPosts;
+
+    @Before
+    public void enableAllocationCounting() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void steadyStatePostAllocatesNothing() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "allocation");
+        CountingListener first = new CountingListener();
+        CountingListener second = new CountingListener();
+        bus.register(Listener.class, first);
+        bus.register(Listener.class, second);
+        final MMBus postingBus = bus;
+        final SubEvent event = new SubEvent();
+        Runnable post = new Runnable() {
+            @Override
+            public void run() {
+                postingBus.post(Listener.class, event);
+            }
+        };
+
+        for (int i = 0; i < WARM_UP_POSTS; i++) {
+            post.run();
+        }
+        long allocated = allocatedBy(post);
+
+        assertEquals("bytes allocated by " + MEASURED_POSTS + " posts", 0, allocated);
+        // each post reaches both methods of both listeners
+        assertEquals(2 * (WARM_UP_POSTS + measuredPosts), first.events);
+        assertEquals(first.events, second.events);
+    }
+
+    @Test
+    public void steadyStateStrictPostAllocatesNothing() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "allocation", new StrictHandlerFindler());
+        CountingStrictListener listener = new CountingStrictListener();
+        bus.register(StrictListener.class, listener);
+        final MMBus postingBus = bus;
+        final Object[] args = {new SubEvent(), 1};
+        Runnable post = new Runnable() {
+            @Override
+            public void run() {
+                postingBus.post(StrictListener.class, "onMessage", args);
+            }
+        };
+
+        for (int i = 0; i < WARM_UP_POSTS; i++) {
+            post.run();
+        }
+        long allocated = allocatedBy(post);
+
+        assertEquals("bytes allocated by " + MEASURED_POSTS + " strict posts", 0, allocated);
+        assertEquals(WARM_UP_POSTS + measuredPosts, listener.messages);
+    }
+
+    /**
+     * Fewest bytes allocated by {@link #MEASURED_POSTS} runs of {@code post}, over up to {@link #MAX_ROUNDS} rounds. A
+     * deoptimization may once reallocate objects the compiler had eliminated, while a post that allocates does so in
+     * every round.
+     */
+    private long allocatedBy(Runnable post) {
+        long threadId = Thread.currentThread().getId();
+        // getThreadAllocatedBytes may allocate itself, measured with an empty interval
+        long overheadStart = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - overheadStart;
+
+        long fewest = Long.MAX_VALUE;
+        for (int round = 0; round < MAX_ROUNDS && fewest > 0; round++) {
+            long start = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURED_POSTS; i++) {
+                post.run();
+            }
+            fewest = Math.min(fewest, Math.max(0, threads.getThreadAllocatedBytes(threadId) - start - overhead));
+            measuredPosts += MEASURED_POSTS;
+        }
+        return fewest;
+    }
+}
@@ -0,0 +1,91 @@
+package xyz.mumiao.mmbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Calls on a {@link MMBus#publisher(Class)} reach the handlers of the called method only, and the proxy rejects
+ * methods no handler can be registered for.
+ */
+public class PublisherTest {
+
+    public interface LoginListener {
+        void onLogin(String user);
+
+        void onLogin(String user, Boolean remembered);
+    }
+
+    public interface BaseListener {
+        void onEvent(String event);
+    }
+
+    public interface DerivedListener extends BaseListener {
+        void onOtherEvent(String event);
+    }
+
+    @Test
+    public void callReachesHandlersOfTheCalledOverloadOnly() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "publisher", new StrictHandlerFindler());
+        final List<String> log = new ArrayList<String>();
+        bus.register(LoginListener.class, new LoginListener() {
+            @Override
+            public void onLogin(String user) {
+                log.add("onLogin(" + user + ")");
+            }
+
+            @Override
+            public void onLogin(String user, Boolean remembered) {
+                log.add("onLogin(" + user + ", " + remembered + ")");
+            }
+        });
+
+        bus.publisher(LoginListener.class).onLogin("tom", true);
+        bus.publisher(LoginListener.class).onLogin("jerry");
+
+        assertEquals(Arrays.asList("onLogin(tom, true)", "onLogin(jerry)"), log);
+        assertSame(bus.publisher(LoginListener.class), bus.publisher(LoginListener.class));
+    }
+
+    @Test
+    public void handlerFailureWithNullArgumentKeepsItsCause() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "publisher", new StrictHandlerFindler());
+        final IllegalStateException failure = new IllegalStateException("handler failed");
+        bus.register(LoginListener.class, new LoginListener() {
+            @Override
+            public void onLogin(String user) {
+                throw failure;
+            }
+
+            @Override
+            public void onLogin(String user, Boolean remembered) {
+            }
+        });
+
+        try {
+            bus.publisher(LoginListener.class).onLogin(null);
+            fail("handler failure was not rethrown");
+        } catch (RuntimeException e) {
+            assertSame(failure, e.getCause());
+            assertTrue(e.getMessage(), e.getMessage().contains(String.class.getName()));
+        }
+    }
+
+    @Test
+    public void interfaceWithInheritedMethodsIsRejected() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "publisher");
+        try {
+            bus.publisher(DerivedListener.class);
+            fail("publisher of an interface with inherited methods was created");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(BaseListener.class.getName()));
+        }
+    }
+}
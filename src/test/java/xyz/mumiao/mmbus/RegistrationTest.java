@@ -0,0 +1,130 @@
+package xyz.mumiao.mmbus;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A {@link Registration} removes exactly the handlers its call added, and weakly registered subscribers are dropped
+ * once collected.
+ */
+public class RegistrationTest {
+
+    private static final int MAX_GC_ROUNDS = 20;
+
+    public interface Listener {
+        void onEvent(String event);
+    }
+
+    public interface OtherListener {
+        void onOther(Integer event);
+    }
+
+    static class RecordingListener implements Listener, OtherListener {
+        final List<Object> received = new ArrayList<Object>();
+
+        @Override
+        public void onEvent(String event) {
+            received.add(event);
+        }
+
+        @Override
+        public void onOther(Integer event) {
+            received.add(event);
+        }
+    }
+
+    @Test
+    public void unregisterRemovesOnlyItsOwnHandlers() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "registration");
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        Registration registration = bus.register(Listener.class, first);
+        bus.register(Listener.class, second);
+
+        registration.unregister();
+        bus.post(Listener.class, "event");
+
+        assertFalse(registration.isRegistered());
+        assertEquals(0, first.received.size());
+        assertEquals(1, second.received.size());
+    }
+
+    @Test
+    public void unregisterTwiceDoesNothing() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "registration");
+        RecordingListener listener = new RecordingListener();
+        Registration registration = bus.register(Listener.class, listener);
+
+        registration.unregister();
+        registration.unregister();
+
+        bus.post(Listener.class, "event");
+        assertEquals(0, listener.received.size());
+    }
+
+    @Test
+    public void registrationCoversEveryInterfaceOfRegisterAll() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "registration");
+        RecordingListener listener = new RecordingListener();
+        Registration registration = bus.registerAll(listener, Listener.class, OtherListener.class);
+
+        bus.post(Listener.class, "event");
+        bus.post(OtherListener.class, 1);
+        registration.unregister();
+        bus.post(Listener.class, "event");
+        bus.post(OtherListener.class, 1);
+
+        assertEquals(2, listener.received.size());
+    }
+
+    @Test
+    public void repeatedRegistrationDoesNotOwnTheFirstHandlers() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "registration");
+        RecordingListener listener = new RecordingListener();
+        bus.register(Listener.class, listener);
+        Registration repeated = bus.register(Listener.class, listener);
+
+        repeated.unregister();
+        bus.post(Listener.class, "event");
+
+        assertEquals(1, listener.received.size());
+    }
+
+    @Test
+    public void weaklyRegisteredSubscriberReceivesEventsWhileReachable() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "registration");
+        RecordingListener listener = new RecordingListener();
+        Registration registration = bus.registerWeak(Listener.class, listener);
+
+        bus.post(Listener.class, "event");
+
+        assertTrue(registration.isRegistered());
+        assertEquals(1, listener.received.size());
+    }
+
+    @Test
+    public void collectedSubscriberIsUnregisteredOnALaterPost() throws InterruptedException {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "registration");
+        WeakReference<RecordingListener> probe = new WeakReference<RecordingListener>(new RecordingListener());
+        Registration registration = bus.registerWeak(Listener.class, probe.get());
+
+        for (int i = 0; i < MAX_GC_ROUNDS && registration.isRegistered(); i++) {
+            System.gc();
+            Thread.sleep(10);
+            bus.post(Listener.class, "event");
+        }
+
+        assertNull(probe.get());
+        assertFalse(registration.isRegistered());
+        // with its only handler gone, the post reaches nobody
+        assertEquals(1, bus.getDeadEvents().size());
+    }
+}
@@ -0,0 +1,106 @@
+package xyz.mumiao.mmbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Sticky posts are kept per signature up to a bound, least recently used dropped first, and replayed only to the
+ * handlers a registration adds.
+ */
+public class StickyEventsTest {
+
+    public interface Listener {
+        void onEvent(String event);
+    }
+
+    static class RecordingListener implements Listener {
+        final List<String> received = new ArrayList<String>();
+
+        @Override
+        public void onEvent(String event) {
+            received.add(event);
+        }
+    }
+
+    private static void postStickySignatures(MMBus bus, int from, int to) {
+        for (int i = from; i < to; i++) {
+            bus.postSticky(Listener.class, "onEvent" + i, "event" + i);
+        }
+    }
+
+    @Test
+    public void leastRecentlyPostedSignatureIsDroppedBeyondTheBound() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "sticky", new StrictHandlerFindler());
+
+        postStickySignatures(bus, 0, StickyEvents.MAX_PER_INTERFACE + 1);
+
+        assertNull(bus.getStickyEvent(Listener.class, "onEvent0", String.class));
+        for (int i = 1; i <= StickyEvents.MAX_PER_INTERFACE; i++) {
+            assertNotNull("onEvent" + i, bus.getStickyEvent(Listener.class, "onEvent" + i, String.class));
+        }
+    }
+
+    @Test
+    public void readingASignatureKeepsIt() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "sticky", new StrictHandlerFindler());
+        postStickySignatures(bus, 0, StickyEvents.MAX_PER_INTERFACE);
+
+        bus.getStickyEvent(Listener.class, "onEvent0", String.class);
+        postStickySignatures(bus, StickyEvents.MAX_PER_INTERFACE, StickyEvents.MAX_PER_INTERFACE + 1);
+
+        assertArrayEquals(new Object[]{"event0"}, bus.getStickyEvent(Listener.class, "onEvent0", String.class));
+        assertNull(bus.getStickyEvent(Listener.class, "onEvent1", String.class));
+    }
+
+    @Test
+    public void repostingASignatureReplacesItsEvent() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "sticky");
+
+        bus.postSticky(Listener.class, "first");
+        bus.postSticky(Listener.class, "second");
+
+        assertEquals("second", bus.getStickyEvent(Listener.class, String.class));
+        RecordingListener listener = new RecordingListener();
+        bus.register(Listener.class, listener);
+        assertEquals(1, listener.received.size());
+        assertEquals("second", listener.received.get(0));
+    }
+
+    @Test
+    public void stickyPostIsReplayedOnlyToNewlyAddedHandlers() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "sticky");
+        RecordingListener early = new RecordingListener();
+        bus.register(Listener.class, early);
+
+        bus.postSticky(Listener.class, "event");
+        assertEquals(1, early.received.size());
+
+        RecordingListener late = new RecordingListener();
+        bus.register(Listener.class, late);
+        // registering again adds nothing, so nothing is replayed
+        bus.register(Listener.class, early);
+
+        assertEquals(1, early.received.size());
+        assertEquals(1, late.received.size());
+        assertEquals("event", late.received.get(0));
+    }
+
+    @Test
+    public void removedStickyPostIsNotReplayed() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "sticky");
+        bus.postSticky(Listener.class, "event");
+
+        assertEquals("event", bus.removeStickyEvent(Listener.class, String.class));
+        RecordingListener listener = new RecordingListener();
+        bus.register(Listener.class, listener);
+
+        assertEquals(0, listener.received.size());
+    }
+}
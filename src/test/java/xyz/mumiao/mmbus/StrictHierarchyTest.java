@@ -0,0 +1,89 @@
+package xyz.mumiao.mmbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Strict posts reach every overload whose parameters accept the posted arguments, most specific first, without
+ * enumerating the combinations of the argument hierarchies.
+ */
+public class StrictHierarchyTest {
+
+    public static class Event {
+    }
+
+    public static class SubEvent extends Event {
+    }
+
+    public interface PairListener {
+        void onPair(SubEvent event, Integer count);
+
+        void onPair(Event event, Integer count);
+
+        void onPair(Object event, Number count);
+
+        void onPair(String event, Integer count);
+    }
+
+    public interface ListsListener {
+        void onLists(List<?> a, List<?> b, List<?> c, List<?> d, List<?> e, List<?> f);
+    }
+
+    @Test
+    public void postReachesAcceptingOverloadsMostSpecificFirst() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "strict", new StrictHandlerFindler());
+        final List<String> log = new ArrayList<String>();
+        bus.register(PairListener.class, new PairListener() {
+            @Override
+            public void onPair(SubEvent event, Integer count) {
+                log.add("SubEvent, Integer");
+            }
+
+            @Override
+            public void onPair(Event event, Integer count) {
+                log.add("Event, Integer");
+            }
+
+            @Override
+            public void onPair(Object event, Number count) {
+                log.add("Object, Number");
+            }
+
+            @Override
+            public void onPair(String event, Integer count) {
+                log.add("String, Integer");
+            }
+        });
+
+        bus.post(PairListener.class, "onPair", new SubEvent(), 1);
+
+        assertEquals(Arrays.asList("SubEvent, Integer", "Event, Integer", "Object, Number"), log);
+    }
+
+    @Test
+    public void manyArgumentsWithDeepHierarchiesResolveOnlyDeclaredOverloads() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "strict", new StrictHandlerFindler());
+        final int[] received = new int[1];
+        bus.register(ListsListener.class, new ListsListener() {
+            @Override
+            public void onLists(List<?> a, List<?> b, List<?> c, List<?> d, List<?> e, List<?> f) {
+                received[0]++;
+            }
+        });
+        // about ten supertypes each, a million combinations if flattened
+        List<?> list = new ArrayList<Object>();
+        Object[] args = {list, list, list, list, list, list};
+
+        bus.post(ListsListener.class, "onLists", args);
+
+        assertEquals(1, received[0]);
+        assertEquals(1, bus.strictDispatchPlanFor(new HandlerKey(ListsListener.class, "onLists",
+                ArrayList.class, ArrayList.class, ArrayList.class, ArrayList.class, ArrayList.class, ArrayList.class))
+                .keys.length);
+    }
+}
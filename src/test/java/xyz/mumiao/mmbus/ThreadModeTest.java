@@ -0,0 +1,140 @@
+package xyz.mumiao.mmbus;
+
+import android.os.Looper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Handlers run on the thread of their {@link ThreadMode}, and queued deliveries keep their post order.
+ */
+public class ThreadModeTest {
+
+    private static final int EVENTS = 100;
+
+    public interface PostingListener {
+        void onEvent(String event);
+    }
+
+    @Subscribe(threadMode = ThreadMode.BACKGROUND)
+    public interface BackgroundListener {
+        void onEvent(String event);
+    }
+
+    @Subscribe(threadMode = ThreadMode.ASYNC)
+    public interface AsyncListener {
+        void onEvent(String event);
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public interface MainListener {
+        void onEvent(String event);
+    }
+
+    @Test
+    public void postingHandlerRunsOnThePostingThread() {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "modes");
+        final List<Thread> threads = new ArrayList<Thread>();
+        bus.register(PostingListener.class, new PostingListener() {
+            @Override
+            public void onEvent(String event) {
+                threads.add(Thread.currentThread());
+            }
+        });
+
+        bus.post(PostingListener.class, "event");
+
+        assertEquals(Collections.singletonList(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void backgroundHandlerRunsInPostOrderOffThePostingThread() throws InterruptedException {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "modes");
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch delivered = new CountDownLatch(EVENTS);
+        bus.register(BackgroundListener.class, new BackgroundListener() {
+            @Override
+            public void onEvent(String event) {
+                events.add(event);
+                threads.add(Thread.currentThread());
+                delivered.countDown();
+            }
+        });
+
+        List<String> posted = new ArrayList<String>();
+        for (int i = 0; i < EVENTS; i++) {
+            posted.add("event" + i);
+            bus.post(BackgroundListener.class, "event" + i);
+        }
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(posted, events);
+        for (Thread thread : threads) {
+            assertNotSame(Thread.currentThread(), thread);
+            assertSame(threads.get(0), thread);
+        }
+    }
+
+    @Test
+    public void asyncHandlerRunsOffThePostingThread() throws InterruptedException {
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "modes");
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch delivered = new CountDownLatch(EVENTS);
+        bus.register(AsyncListener.class, new AsyncListener() {
+            @Override
+            public void onEvent(String event) {
+                threads.add(Thread.currentThread());
+                delivered.countDown();
+            }
+        });
+
+        for (int i = 0; i < EVENTS; i++) {
+            bus.post(AsyncListener.class, "event" + i);
+        }
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(EVENTS, threads.size());
+        for (Thread thread : threads) {
+            assertNotSame(Thread.currentThread(), thread);
+        }
+    }
+
+    @Test
+    public void mainPostQueuesBehindWaitingMainDeliveries() throws NoSuchMethodException {
+        assumeTrue(Looper.myLooper() == Looper.getMainLooper());
+        MMBus bus = new MMBus(ThreadEnforcer.ANY, "modes");
+        final List<String> events = new ArrayList<String>();
+        MainListener listener = new MainListener() {
+            @Override
+            public void onEvent(String event) {
+                events.add(event);
+            }
+        };
+        bus.register(MainListener.class, listener);
+        // a delivery posted from another thread, still waiting for the main looper
+        bus.mainThreadPoster.enqueue(new EventHandler<MainListener>(listener,
+                MainListener.class.getMethod("onEvent", String.class)), new Object[]{"queued"});
+
+        bus.post(MainListener.class, "posted");
+        assertEquals(Collections.<String>emptyList(), events);
+
+        bus.mainThreadPoster.handleMessage(null);
+        assertEquals(Arrays.asList("queued", "posted"), events);
+
+        bus.post(MainListener.class, "direct");
+        assertEquals(Arrays.asList("queued", "posted", "direct"), events);
+    }
+}
@@ -0,0 +1,170 @@
+package xyz.mumiao.mmservicecenter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LifecycleBroadcastTest {
+
+    private static final long TIMEOUT_MILLIS = 200;
+
+    static CountDownLatch release = new CountDownLatch(1);
+    static final AtomicInteger quickCalls = new AtomicInteger();
+    static volatile Thread foregroundThread;
+
+    static void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class StuckService extends MMService {
+        @Override
+        public void onServiceReloadData() {
+            awaitRelease();
+        }
+    }
+
+    @ServiceLifecycle(parallel = true)
+    public static class Stuck1 extends StuckService {
+    }
+
+    @ServiceLifecycle(parallel = true)
+    public static class Stuck2 extends StuckService {
+    }
+
+    @ServiceLifecycle(parallel = true)
+    public static class Stuck3 extends StuckService {
+    }
+
+    @ServiceLifecycle(parallel = true)
+    public static class Stuck4 extends StuckService {
+    }
+
+    @ServiceLifecycle(parallel = true)
+    public static class Stuck5 extends StuckService {
+    }
+
+    @ServiceLifecycle(parallel = true)
+    public static class Stuck6 extends StuckService {
+    }
+
+    @ServiceLifecycle(group = 1, parallel = true)
+    public static class QuickService extends MMService {
+        @Override
+        public void onServiceReloadData() {
+            quickCalls.incrementAndGet();
+        }
+    }
+
+    public static class ForegroundService extends MMService {
+        @Override
+        public void onServiceEnterForeground() {
+            foregroundThread = Thread.currentThread();
+        }
+    }
+
+    @ServiceLifecycle(parallel = true)
+    public static class SlowClearService extends MMService {
+        @Override
+        public void onServiceClearData() {
+            awaitRelease();
+        }
+    }
+
+    public static class BlockingClearService extends MMService {
+        @Override
+        public void onServiceClearData() {
+            awaitRelease();
+        }
+    }
+
+    public static class FailingClearService extends MMService {
+        @Override
+        public void onServiceClearData() {
+            throw new IllegalStateException("clear failed");
+        }
+    }
+
+    private static final Class<?>[] SERVICES = {Stuck1.class, Stuck2.class, Stuck3.class, Stuck4.class, Stuck5.class,
+            Stuck6.class, QuickService.class, ForegroundService.class, SlowClearService.class,
+            BlockingClearService.class, FailingClearService.class};
+
+    @Before
+    public void setUp() {
+        MMServiceCenter.configDebug(false);
+        MMServiceCenter.init(null);
+        MMServiceCenter.setLifecycleTimeout(TIMEOUT_MILLIS);
+        release = new CountDownLatch(1);
+        quickCalls.set(0);
+    }
+
+    @After
+    @SuppressWarnings("unchecked")
+    public void tearDown() {
+        release.countDown();
+        for (Class<?> cls : SERVICES) {
+            MMServiceCenter.removeService((Class<? extends MMServiceInterface>) cls);
+        }
+        MMServiceCenter.setLifecycleTimeout(5000);
+    }
+
+    @Test
+    public void callbacksRunOnTheCallerThreadByDefault() {
+        MMServiceCenter.getService(ForegroundService.class);
+
+        MMServiceCenter.callEnterForeground();
+
+        assertSame(Thread.currentThread(), foregroundThread);
+    }
+
+    @Test
+    public void callbacksStuckPastTheirTimeoutDoNotHoldUpLaterBroadcasts() throws InterruptedException {
+        // more stuck callbacks than the pool has threads
+        for (Class<? extends MMServiceInterface> cls : Arrays.<Class<? extends MMServiceInterface>>asList(
+                Stuck1.class, Stuck2.class, Stuck3.class, Stuck4.class, Stuck5.class, Stuck6.class)) {
+            MMServiceCenter.getService(cls);
+        }
+        MMServiceCenter.getService(QuickService.class);
+
+        for (int i = 1; i <= 3; i++) {
+            long started = System.nanoTime();
+            MMServiceCenter.callReloadData();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            // one timeout for the stuck group, one at most for the quick group
+            assertTrue("broadcast " + i + " took " + elapsedMillis + "ms", elapsedMillis < 2 * TIMEOUT_MILLIS + 300);
+            assertEquals(i, quickCalls.get());
+        }
+    }
+
+    @Test
+    public void asyncBroadcastCompletesItsFuture() throws InterruptedException {
+        MMServiceCenter.getService(SlowClearService.class);
+        MMServiceCenter.getService(BlockingClearService.class);
+        MMServiceCenter.getService(FailingClearService.class);
+
+        LifecycleFuture future = MMServiceCenter.callClearDataAsync();
+        // BlockingClearService holds the broadcast until released
+        assertFalse(future.isDone());
+        // past the deadline of SlowClearService, which is released at the same time
+        Thread.sleep(2 * TIMEOUT_MILLIS);
+        assertFalse(future.isDone());
+        release.countDown();
+
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.<Class<?>>asList(SlowClearService.class), future.getTimedOutServices());
+        assertEquals(Arrays.<Class<?>>asList(FailingClearService.class), future.getFailedServices());
+    }
+}
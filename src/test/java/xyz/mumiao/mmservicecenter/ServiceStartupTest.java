@@ -0,0 +1,203 @@
+package xyz.mumiao.mmservicecenter;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceStartupTest {
+
+    private static final List<Class<?>> initOrder = Collections.synchronizedList(new ArrayList<Class<?>>());
+    private static volatile CyclicBarrier barrier;
+
+    private static void recordInit(Class<?> cls) {
+        initOrder.add(cls);
+    }
+
+    private static void awaitBarrier() {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException("services were not initialized in parallel", e);
+        }
+    }
+
+    public static class RootService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            recordInit(RootService.class);
+        }
+    }
+
+    public static class LeftService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            recordInit(LeftService.class);
+        }
+    }
+
+    public static class RightService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            recordInit(RightService.class);
+        }
+    }
+
+    public static class JoinService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            recordInit(JoinService.class);
+        }
+    }
+
+    public static class ParallelService1 extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            awaitBarrier();
+        }
+    }
+
+    public static class ParallelService2 extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            awaitBarrier();
+        }
+    }
+
+    public static class CycleService1 extends MMService {
+    }
+
+    public static class CycleService2 extends MMService {
+    }
+
+    public static class FailingService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            throw new IllegalStateException("init failed");
+        }
+    }
+
+    public static class AfterFailingService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            recordInit(AfterFailingService.class);
+        }
+    }
+
+    public static class UncreatableService extends MMService {
+        private UncreatableService() {
+        }
+    }
+
+    public static class AfterUncreatableService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            recordInit(AfterUncreatableService.class);
+        }
+    }
+
+    private static final Class<?>[] SERVICES = {RootService.class, LeftService.class, RightService.class,
+            JoinService.class, ParallelService1.class, ParallelService2.class, CycleService1.class,
+            CycleService2.class, FailingService.class, AfterFailingService.class, UncreatableService.class,
+            AfterUncreatableService.class};
+
+    @Before
+    public void setUp() {
+        MMServiceCenter.configDebug(false);
+        MMServiceCenter.init(null);
+        initOrder.clear();
+    }
+
+    @After
+    @SuppressWarnings("unchecked")
+    public void tearDown() {
+        for (Class<?> cls : SERVICES) {
+            MMServiceCenter.removeService((Class<? extends MMServiceInterface>) cls);
+        }
+    }
+
+    @Test
+    public void servicesInitializeAfterTheirDependencies() {
+        MMServiceCenter.startup()
+                .add(JoinService.class, LeftService.class, RightService.class)
+                .add(LeftService.class, RootService.class)
+                .add(RightService.class, RootService.class)
+                .start();
+
+        assertEquals(4, initOrder.size());
+        assertEquals(RootService.class, initOrder.get(0));
+        assertTrue(initOrder.indexOf(LeftService.class) < initOrder.indexOf(JoinService.class));
+        assertTrue(initOrder.indexOf(RightService.class) < initOrder.indexOf(JoinService.class));
+    }
+
+    @Test
+    public void independentServicesInitializeInParallel() {
+        barrier = new CyclicBarrier(2);
+
+        // each waits for the other, so a sequential startup fails
+        MMServiceCenter.startup()
+                .add(ParallelService1.class)
+                .add(ParallelService2.class)
+                .parallelism(2)
+                .start();
+
+        assertTrue(MMServiceCenter.isInitialized(ParallelService1.class));
+        assertTrue(MMServiceCenter.isInitialized(ParallelService2.class));
+    }
+
+    @Test
+    public void dependencyCycleIsRejectedBeforeAnythingInitializes() {
+        try {
+            MMServiceCenter.startup()
+                    .add(CycleService1.class, CycleService2.class)
+                    .add(CycleService2.class, CycleService1.class)
+                    .start();
+            fail("cycle was not detected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertTrue(!MMServiceCenter.isInitialized(CycleService1.class));
+        assertTrue(!MMServiceCenter.isInitialized(CycleService2.class));
+    }
+
+    @Test
+    public void failureIsRethrownAfterTheOtherServicesInitialize() {
+        try {
+            MMServiceCenter.startup()
+                    .add(AfterFailingService.class, FailingService.class)
+                    .start();
+            fail("init failure was swallowed");
+        } catch (IllegalStateException e) {
+            assertEquals("init failed", e.getMessage());
+        }
+
+        assertEquals(Collections.<Class<?>>singletonList(AfterFailingService.class), initOrder);
+    }
+
+    @Test
+    public void serviceThatCannotBeCreatedFailsTheStartup() {
+        try {
+            MMServiceCenter.startup()
+                    .add(AfterUncreatableService.class, UncreatableService.class)
+                    .start();
+            fail("uncreatable service counted as initialized");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(UncreatableService.class.getName()));
+        }
+
+        assertEquals(Collections.<Class<?>>singletonList(AfterUncreatableService.class), initOrder);
+    }
+}
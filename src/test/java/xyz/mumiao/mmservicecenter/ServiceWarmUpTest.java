@@ -0,0 +1,149 @@
+package xyz.mumiao.mmservicecenter;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Each test schedules on its own {@link ServiceWarmUp}, so the first frame of one does not leak into another.
+ */
+public class ServiceWarmUpTest {
+
+    private static volatile Thread eagerThread;
+    private static volatile Thread afterFirstFrameThread;
+    private static volatile CountDownLatch afterFirstFrameInit;
+    private static final AtomicInteger lateInits = new AtomicInteger();
+
+    private ServiceWarmUp warmUp;
+
+    @ServiceInit(InitPriority.EAGER)
+    public static class EagerService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            eagerThread = Thread.currentThread();
+        }
+    }
+
+    public static class UndeclaredService extends MMService {
+    }
+
+    @ServiceInit(InitPriority.AFTER_FIRST_FRAME)
+    public static class AfterFirstFrameService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            afterFirstFrameThread = Thread.currentThread();
+            afterFirstFrameInit.countDown();
+        }
+    }
+
+    @ServiceInit(InitPriority.AFTER_FIRST_FRAME)
+    public static class LateService extends MMService {
+        @Override
+        public void onServiceInit(Context context) {
+            lateInits.incrementAndGet();
+        }
+    }
+
+    @ServiceInit(InitPriority.ON_DEMAND)
+    public static class OnDemandService extends MMService {
+    }
+
+    private static final Class<?>[] SERVICES = {EagerService.class, UndeclaredService.class,
+            AfterFirstFrameService.class, LateService.class, OnDemandService.class};
+
+    @Before
+    public void setUp() {
+        MMServiceCenter.configDebug(false);
+        MMServiceCenter.init(null);
+        warmUp = new ServiceWarmUp();
+        eagerThread = null;
+        afterFirstFrameThread = null;
+        afterFirstFrameInit = new CountDownLatch(1);
+        lateInits.set(0);
+    }
+
+    @After
+    @SuppressWarnings("unchecked")
+    public void tearDown() {
+        for (Class<?> cls : SERVICES) {
+            MMServiceCenter.removeService((Class<? extends MMServiceInterface>) cls);
+        }
+    }
+
+    @Test
+    public void eagerServicesInitializeOnTheCallingThread() {
+        warmUp.schedule(EagerService.class);
+        warmUp.schedule(UndeclaredService.class);
+
+        assertSame(Thread.currentThread(), eagerThread);
+        assertTrue(MMServiceCenter.isInitialized(UndeclaredService.class));
+    }
+
+    @Test
+    public void afterFirstFrameServicesWaitForTheFirstFrame() throws InterruptedException {
+        warmUp.schedule(AfterFirstFrameService.class);
+
+        assertFalse(afterFirstFrameInit.await(100, TimeUnit.MILLISECONDS));
+        warmUp.notifyFirstFrame();
+
+        assertTrue(afterFirstFrameInit.await(5, TimeUnit.SECONDS));
+        assertEquals("MMServiceCenter-warmup", afterFirstFrameThread.getName());
+    }
+
+    @Test
+    public void afterFirstFrameServiceScheduledLaterStartsRightAway() throws InterruptedException {
+        warmUp.notifyFirstFrame();
+
+        warmUp.schedule(AfterFirstFrameService.class);
+
+        assertTrue(afterFirstFrameInit.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void serviceObtainedBeforeItsTurnIsNotInitializedAgain() throws InterruptedException {
+        warmUp.schedule(LateService.class);
+        MMServiceCenter.getService(LateService.class);
+        assertEquals(1, lateInits.get());
+
+        warmUp.notifyFirstFrame();
+        // the warm-up thread runs one service at a time, so this one runs after LateService's turn
+        warmUp.schedule(AfterFirstFrameService.class);
+
+        assertTrue(afterFirstFrameInit.await(5, TimeUnit.SECONDS));
+        assertEquals(1, lateInits.get());
+    }
+
+    @Test
+    public void onDemandServicesWaitForGetService() {
+        warmUp.schedule(OnDemandService.class);
+        warmUp.notifyFirstFrame();
+
+        assertFalse(MMServiceCenter.isInitialized(OnDemandService.class));
+        MMServiceCenter.getService(OnDemandService.class);
+        assertTrue(MMServiceCenter.isInitialized(OnDemandService.class));
+    }
+
+    @Test
+    public void warmUpRejectsClassesThatAreNotServices() {
+        try {
+            MMServiceCenter.warmUp(EagerService.class, String.class);
+            fail("String accepted as a service");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // checked before anything is scheduled
+        assertFalse(MMServiceCenter.isInitialized(EagerService.class));
+    }
+}